@@ -19,6 +19,7 @@ import android.widget.TextView;
 import android.widget.Toast;
 
 import com.worldpay.cse.WPCardData;
+import com.worldpay.cse.WPEncryptionCallback;
 import com.worldpay.cse.WPValidationErrorCodes;
 import com.worldpay.cse.WorldpayCSE;
 import com.worldpay.cse.demoapp.R;
@@ -54,6 +55,8 @@ public class MainActivity extends AppCompatActivity {
 
     private Map<Integer, String> errorList = new HashMap<>();
 
+    private final WorldpayCSE worldpayCSE = new WorldpayCSE();
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -86,27 +89,49 @@ public class MainActivity extends AppCompatActivity {
         cardData.setExpiryMonth(cardExpiryMonth.getText().toString());
         cardData.setExpiryYear(cardExpiryYear.getText().toString());
 
-        encryptedData.setText(encryptCardData(cardData));
+        encryptCardData(cardData);
 
     }
 
-    //Does the encryption of the card data. In case the operation fails, it displays the error details.
+    //Does the encryption of the card data off the UI thread. In case the operation fails, it displays the error details.
     //The might be two kind of errors: Invalid card fields, or other generic error
-    private String encryptCardData(WPCardData cardData) {
+    private void encryptCardData(WPCardData cardData) {
 
-        WorldpayCSE worldpayCSE = new WorldpayCSE();
         try {
             worldpayCSE.setPublicKey(DEFAULT_PUBLIC_KEY);
-            return worldpayCSE.encrypt(cardData);
-        } catch (WPCSEInvalidCardData e) {
-            //Alternatively to catching this exception, there is WorldpayCSE#validate(WPCardData) that
-            //can be used for similar purpose
-            displayFormFieldErrors(e.getErrorCodes());
         } catch (WPCSEException e) {
-            //If the exception is not card validation related, just show a toast with the message
             Toast.makeText(this, e.getMessage(), Toast.LENGTH_LONG).show();
+            return;
         }
-        return null;
+        worldpayCSE.encryptAsync(cardData, new WPEncryptionCallback() {
+            @Override
+            public void onSuccess(final String data) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        encryptedData.setText(data);
+                    }
+                });
+            }
+
+            @Override
+            public void onError(final WPCSEException e) {
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        encryptedData.setText(null);
+                        if (e instanceof WPCSEInvalidCardData) {
+                            //Alternatively to catching this exception, there is WorldpayCSE#validate(WPCardData) that
+                            //can be used for similar purpose
+                            displayFormFieldErrors(((WPCSEInvalidCardData) e).getErrorCodes());
+                        } else {
+                            //If the exception is not card validation related, just show a toast with the message
+                            Toast.makeText(MainActivity.this, e.getMessage(), Toast.LENGTH_LONG).show();
+                        }
+                    }
+                });
+            }
+        });
     }
 
     //Load the errors from resources. Each error has a code that is separated by " - " from the text
@@ -0,0 +1,52 @@
+//
+//  WPBatchCardNumberTask.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task that validates a range of fixed length card numbers packed as ASCII digits in a byte array.
+ * The bit mask of error codes of each card number is stored at its index.
+ */
+class WPBatchCardNumberTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int THRESHOLD = 16384;
+
+    private final byte[] digits;
+    private final int cardNumberLength;
+    private final int[] results;
+    private final int from;
+    private final int to;
+
+    WPBatchCardNumberTask(byte[] digits, int cardNumberLength, int[] results, int from, int to) {
+        this.digits = digits;
+        this.cardNumberLength = cardNumberLength;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            ByteBuffer buffer = ByteBuffer.wrap(digits);
+            for (int i = from; i < to; i++) {
+                results[i] = WPValidationResult.bit(WPLuhn.validateCardNumber(buffer, i * cardNumberLength,
+                        cardNumberLength));
+            }
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new WPBatchCardNumberTask(digits, cardNumberLength, results, from, middle),
+                    new WPBatchCardNumberTask(digits, cardNumberLength, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,57 @@
+//
+//  WPBatchEncryptionTask.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task that validates and encrypts a range of a card batch. Each result is stored at the
+ * index of its card, so the results keep the input order.
+ */
+class WPBatchEncryptionTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final int THRESHOLD = 8;
+
+    private final WPKeyContext context;
+    private final WPCardValidator validator;
+    private final WPCardData[] cards;
+    private final WPEncryptionResult[] results;
+    private final int from;
+    private final int to;
+
+    WPBatchEncryptionTask(WPKeyContext context, WPCardValidator validator, WPCardData[] cards,
+                          WPEncryptionResult[] results) {
+        this(context, validator, cards, results, 0, cards.length);
+    }
+
+    private WPBatchEncryptionTask(WPKeyContext context, WPCardValidator validator, WPCardData[] cards,
+                                  WPEncryptionResult[] results, int from, int to) {
+        this.context = context;
+        this.validator = validator;
+        this.cards = cards;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                results[i] = WorldpayCSE.encryptCard(context, validator, null, cards[i]);
+            }
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new WPBatchEncryptionTask(context, validator, cards, results, from, middle),
+                    new WPBatchEncryptionTask(context, validator, cards, results, middle, to));
+        }
+    }
+}
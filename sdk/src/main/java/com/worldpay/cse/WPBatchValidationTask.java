@@ -0,0 +1,62 @@
+//
+//  WPBatchValidationTask.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Fork-join task that validates a range of card records held as parallel field arrays. The bit mask of
+ * error codes of each record is stored at its index, and nothing is allocated per record.
+ */
+class WPBatchValidationTask extends RecursiveAction {
+
+    private static final long serialVersionUID = 1L;
+
+    //validating a record takes well under a microsecond, so the ranges are large enough to amortise the forks
+    private static final int THRESHOLD = 4096;
+
+    private final WPCardValidator validator;
+    private final String[] cardNumbers;
+    private final String[] cvcs;
+    private final String[] expiryMonths;
+    private final String[] expiryYears;
+    private final String[] cardHolderNames;
+    private final int[] results;
+    private final int from;
+    private final int to;
+
+    WPBatchValidationTask(WPCardValidator validator, String[] cardNumbers, String[] cvcs, String[] expiryMonths,
+                          String[] expiryYears, String[] cardHolderNames, int[] results, int from, int to) {
+        this.validator = validator;
+        this.cardNumbers = cardNumbers;
+        this.cvcs = cvcs;
+        this.expiryMonths = expiryMonths;
+        this.expiryYears = expiryYears;
+        this.cardHolderNames = cardHolderNames;
+        this.results = results;
+        this.from = from;
+        this.to = to;
+    }
+
+    @Override
+    protected void compute() {
+        if (to - from <= THRESHOLD) {
+            for (int i = from; i < to; i++) {
+                results[i] = validator.validate(cardNumbers[i], cvcs[i], expiryMonths[i], expiryYears[i],
+                        cardHolderNames[i]);
+            }
+        } else {
+            int middle = (from + to) >>> 1;
+            invokeAll(new WPBatchValidationTask(validator, cardNumbers, cvcs, expiryMonths, expiryYears,
+                            cardHolderNames, results, from, middle),
+                    new WPBatchValidationTask(validator, cardNumbers, cvcs, expiryMonths, expiryYears,
+                            cardHolderNames, results, middle, to));
+        }
+    }
+}
@@ -0,0 +1,100 @@
+//
+//  WPCardBrand.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+/**
+ * Payment card brands, as detected from the issuer identification number (the leading digits) of a card number.
+ * <p>
+ * Each brand has its own card number lengths and security code length, which the card validation uses instead
+ * of the generic 12 to 20 digits and 3 to 4 digits rules. Cards of an {@link WPCardBrand#UNKNOWN} brand keep
+ * the generic rules.
+ * </p>
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WPCardBrand brand = WPCardBrand.detect("3742");
+ *  //brand == WPCardBrand.AMEX, brand.getCvcLength() == 4
+ * </pre>
+ */
+public enum WPCardBrand {
+
+    VISA(3, 13, 16, 19),
+    MASTERCARD(3, 16),
+    AMEX(4, 15),
+    DISCOVER(3, 16, 17, 18, 19),
+    DINERS_CLUB(3, 14, 15, 16, 17, 18, 19),
+    JCB(3, 16, 17, 18, 19),
+    MAESTRO(3, 12, 13, 14, 15, 16, 17, 18, 19),
+    UNIONPAY(3, 16, 17, 18, 19),
+    /**
+     * A card number whose leading digits do not match any known brand. The generic rules apply.
+     */
+    UNKNOWN(0, 12, 13, 14, 15, 16, 17, 18, 19, 20);
+
+    private static final int GENERIC_CVC_MIN_LENGTH = 3;
+    private static final int GENERIC_CVC_MAX_LENGTH = 4;
+
+    private final int cvcLength;
+    //bit n is set if n is a valid card number length
+    private final int lengths;
+
+    WPCardBrand(int cvcLength, int... lengths) {
+        this.cvcLength = cvcLength;
+        int mask = 0;
+        for (int length : lengths) {
+            mask |= 1 << length;
+        }
+        this.lengths = mask;
+    }
+
+    /**
+     * Returns the brand of the card number, from its leading digits. Only the digits before the first non
+     * digit character are considered, so partial card numbers can be checked as they are typed. The lookup
+     * takes time proportional to the length of the matched prefix, at most six digits.
+     *
+     * @param cardNumber the card number, or its first digits
+     * @return the brand, {@link WPCardBrand#UNKNOWN} if none matches or <code>cardNumber</code> is null
+     */
+    public static WPCardBrand detect(CharSequence cardNumber) {
+        return WPCardBrandIndex.lookup(cardNumber);
+    }
+
+    /**
+     * Returns the length of the security code of the brand
+     *
+     * @return the length, or 0 if the brand is {@link WPCardBrand#UNKNOWN} and the length is not known
+     */
+    public int getCvcLength() {
+        return cvcLength;
+    }
+
+    /**
+     * Returns whether the card numbers of the brand can have the provided length
+     *
+     * @param length the number of digits
+     * @return true if the length is valid for the brand
+     */
+    public boolean isValidLength(int length) {
+        return length >= 0 && length < Integer.SIZE && (lengths & (1 << length)) != 0;
+    }
+
+    /**
+     * Returns whether the security codes of the brand can have the provided length
+     *
+     * @param length the number of digits
+     * @return true if the length is valid for the brand
+     */
+    public boolean isValidCvcLength(int length) {
+        if (cvcLength == 0) {
+            return length >= GENERIC_CVC_MIN_LENGTH && length <= GENERIC_CVC_MAX_LENGTH;
+        }
+        return length == cvcLength;
+    }
+}
@@ -0,0 +1,127 @@
+//
+//  WPCardBrandIndex.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+/**
+ * Digit trie of the issuer identification number ranges of the {@link WPCardBrand}s. A range such as
+ * 2221-2720 is stored as the few prefixes that cover it exactly (2221-2229, 223-229, 23-26, 270-271, 2720),
+ * so a lookup walks at most one node per digit and the longest matching prefix wins.
+ */
+final class WPCardBrandIndex {
+
+    private static final int RADIX = 10;
+
+    //lower and upper bounds of each range, both with the same number of digits
+    private static final Object[][] RANGES = {
+            {WPCardBrand.VISA, "4", "4"},
+            {WPCardBrand.MASTERCARD, "51", "55"},
+            {WPCardBrand.MASTERCARD, "2221", "2720"},
+            {WPCardBrand.AMEX, "34", "34"},
+            {WPCardBrand.AMEX, "37", "37"},
+            {WPCardBrand.DISCOVER, "6011", "6011"},
+            {WPCardBrand.DISCOVER, "644", "649"},
+            {WPCardBrand.DISCOVER, "65", "65"},
+            {WPCardBrand.DINERS_CLUB, "300", "305"},
+            {WPCardBrand.DINERS_CLUB, "3095", "3095"},
+            {WPCardBrand.DINERS_CLUB, "36", "36"},
+            {WPCardBrand.DINERS_CLUB, "38", "39"},
+            {WPCardBrand.JCB, "3528", "3589"},
+            {WPCardBrand.UNIONPAY, "62", "62"},
+            {WPCardBrand.MAESTRO, "5018", "5018"},
+            {WPCardBrand.MAESTRO, "5020", "5020"},
+            {WPCardBrand.MAESTRO, "5038", "5038"},
+            {WPCardBrand.MAESTRO, "5893", "5893"},
+            {WPCardBrand.MAESTRO, "6304", "6304"},
+            {WPCardBrand.MAESTRO, "6759", "6759"},
+            {WPCardBrand.MAESTRO, "6761", "6763"}
+    };
+
+    private static final Node ROOT = build();
+
+    private WPCardBrandIndex() {
+    }
+
+    static WPCardBrand lookup(CharSequence cardNumber) {
+        WPCardBrand result = WPCardBrand.UNKNOWN;
+        if (cardNumber == null) {
+            return result;
+        }
+        Node node = ROOT;
+        int length = cardNumber.length();
+        for (int i = 0; i < length; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit >= RADIX) {
+                break;
+            }
+            node = node.children[digit];
+            if (node == null) {
+                break;
+            }
+            if (node.brand != null) {
+                result = node.brand;
+            }
+        }
+        return result;
+    }
+
+    static WPCardBrand lookup(byte[] cardNumber, int offset, int length) {
+        WPCardBrand result = WPCardBrand.UNKNOWN;
+        Node node = ROOT;
+        for (int i = 0; i < length; i++) {
+            int digit = cardNumber[offset + i] - '0';
+            if (digit < 0 || digit >= RADIX) {
+                break;
+            }
+            node = node.children[digit];
+            if (node == null) {
+                break;
+            }
+            if (node.brand != null) {
+                result = node.brand;
+            }
+        }
+        return result;
+    }
+
+    private static Node build() {
+        Node root = new Node();
+        for (Object[] range : RANGES) {
+            add(root, (String) range[1], (String) range[2], 0, true, true, (WPCardBrand) range[0]);
+        }
+        return root;
+    }
+
+    /**
+     * Adds the prefixes between <code>low</code> and <code>high</code> below <code>node</code>, from digit
+     * <code>index</code>. A node that is not bound by either end covers its whole subtree, so the brand is
+     * stored on it and the recursion stops there.
+     */
+    private static void add(Node node, String low, String high, int index, boolean lowBound, boolean highBound,
+                            WPCardBrand brand) {
+        if (index == low.length() || !lowBound && !highBound) {
+            node.brand = brand;
+            return;
+        }
+        int from = lowBound ? low.charAt(index) - '0' : 0;
+        int to = highBound ? high.charAt(index) - '0' : RADIX - 1;
+        for (int digit = from; digit <= to; digit++) {
+            Node child = node.children[digit];
+            if (child == null) {
+                child = new Node();
+                node.children[digit] = child;
+            }
+            add(child, low, high, index + 1, lowBound && digit == from, highBound && digit == to, brand);
+        }
+    }
+
+    private static final class Node {
+        final Node[] children = new Node[RADIX];
+        WPCardBrand brand;
+    }
+}
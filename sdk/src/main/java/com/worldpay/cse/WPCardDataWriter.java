@@ -0,0 +1,215 @@
+//
+//  WPCardDataWriter.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+/**
+ * Writes the JSON payload of a {@link WPCardData} object straight into an UTF-8 byte array, without
+ * reflection. The output is byte for byte the same as the one of {@link WPCardData#toString()}: fields in
+ * declaration order, null fields omitted and strings escaped the way Gson does by default (HTML safe).
+ */
+final class WPCardDataWriter {
+
+    private static final byte[] CARD_NUMBER = ascii("\"cardNumber\":");
+    private static final byte[] CVC = ascii("\"cvc\":");
+    private static final byte[] EXPIRY_MONTH = ascii("\"expiryMonth\":");
+    private static final byte[] EXPIRY_YEAR = ascii("\"expiryYear\":");
+    private static final byte[] CARD_HOLDER_NAME = ascii("\"cardHolderName\":");
+
+    private static final byte[] HEX = ascii("0123456789abcdef");
+
+    //length of a \\uXXXX escape sequence
+    private static final int UNICODE_ESCAPE_LENGTH = 6;
+    private static final int ONE_BYTE_LIMIT = 0x80;
+    private static final int TWO_BYTES_LIMIT = 0x800;
+    private static final int LINE_SEPARATOR = 0x2028;
+    private static final int PARAGRAPH_SEPARATOR = 0x2029;
+
+    private WPCardDataWriter() {
+    }
+
+    /**
+     * Returns the UTF-8 encoded JSON payload of the card data
+     *
+     * @param cardData the card data
+     * @return the JSON payload
+     */
+    static byte[] write(WPCardData cardData) {
+        return write(cardData.getCardNumber(), cardData.getCvc(), cardData.getExpiryMonth(),
+                cardData.getExpiryYear(), cardData.getCardHolderName());
+    }
+
+    /**
+     * Returns the UTF-8 encoded JSON payload of the provided card fields
+     *
+     * @return the JSON payload
+     */
+    static byte[] write(String cardNumber, String cvc, String expiryMonth, String expiryYear,
+                        String cardHolderName) {
+        //braces, and one comma per field after the first one
+        int length = 2;
+        int fields = 0;
+        if (cardNumber != null) {
+            length += CARD_NUMBER.length + stringLength(cardNumber);
+            fields++;
+        }
+        if (cvc != null) {
+            length += CVC.length + stringLength(cvc);
+            fields++;
+        }
+        if (expiryMonth != null) {
+            length += EXPIRY_MONTH.length + stringLength(expiryMonth);
+            fields++;
+        }
+        if (expiryYear != null) {
+            length += EXPIRY_YEAR.length + stringLength(expiryYear);
+            fields++;
+        }
+        if (cardHolderName != null) {
+            length += CARD_HOLDER_NAME.length + stringLength(cardHolderName);
+            fields++;
+        }
+        if (fields > 1) {
+            length += fields - 1;
+        }
+
+        byte[] out = new byte[length];
+        int pos = 0;
+        out[pos++] = '{';
+        pos = writeField(out, pos, CARD_NUMBER, cardNumber);
+        pos = writeField(out, pos, CVC, cvc);
+        pos = writeField(out, pos, EXPIRY_MONTH, expiryMonth);
+        pos = writeField(out, pos, EXPIRY_YEAR, expiryYear);
+        pos = writeField(out, pos, CARD_HOLDER_NAME, cardHolderName);
+        out[pos] = '}';
+        return out;
+    }
+
+    private static int writeField(byte[] out, int pos, byte[] name, String value) {
+        if (value == null) {
+            return pos;
+        }
+        if (pos > 1) {
+            out[pos++] = ',';
+        }
+        System.arraycopy(name, 0, out, pos, name.length);
+        return writeString(out, pos + name.length, value);
+    }
+
+    //length of the quoted, escaped and UTF-8 encoded string
+    private static int stringLength(String value) {
+        int length = 2;
+        int size = value.length();
+        for (int i = 0; i < size; i++) {
+            char c = value.charAt(i);
+            int escaped = escapedLength(c);
+            if (escaped > 0) {
+                length += escaped;
+            } else if (c < ONE_BYTE_LIMIT) {
+                length++;
+            } else if (c < TWO_BYTES_LIMIT) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+                length += 4;
+                i++;
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                //an unpaired surrogate is replaced by '?', as String.getBytes does
+                length++;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    private static int writeString(byte[] out, int pos, String value) {
+        out[pos++] = '"';
+        int size = value.length();
+        for (int i = 0; i < size; i++) {
+            char c = value.charAt(i);
+            int escaped = escapedLength(c);
+            if (escaped == 2) {
+                out[pos++] = '\\';
+                out[pos++] = (byte) shortEscape(c);
+            } else if (escaped == UNICODE_ESCAPE_LENGTH) {
+                out[pos++] = '\\';
+                out[pos++] = 'u';
+                out[pos++] = HEX[(c >> 12) & 0xf];
+                out[pos++] = HEX[(c >> 8) & 0xf];
+                out[pos++] = HEX[(c >> 4) & 0xf];
+                out[pos++] = HEX[c & 0xf];
+            } else if (c < ONE_BYTE_LIMIT) {
+                out[pos++] = (byte) c;
+            } else if (c < TWO_BYTES_LIMIT) {
+                out[pos++] = (byte) (0xc0 | (c >> 6));
+                out[pos++] = (byte) (0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out[pos++] = (byte) (0xf0 | (codePoint >> 18));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 12) & 0x3f));
+                out[pos++] = (byte) (0x80 | ((codePoint >> 6) & 0x3f));
+                out[pos++] = (byte) (0x80 | (codePoint & 0x3f));
+            } else if (Character.isHighSurrogate(c) || Character.isLowSurrogate(c)) {
+                out[pos++] = '?';
+            } else {
+                out[pos++] = (byte) (0xe0 | (c >> 12));
+                out[pos++] = (byte) (0x80 | ((c >> 6) & 0x3f));
+                out[pos++] = (byte) (0x80 | (c & 0x3f));
+            }
+        }
+        out[pos++] = '"';
+        return pos;
+    }
+
+    //length of the escape sequence Gson writes for the character, or 0 if it is written as it is
+    private static int escapedLength(char c) {
+        switch (c) {
+            case '"':
+            case '\\':
+            case '\t':
+            case '\b':
+            case '\n':
+            case '\r':
+            case '\f':
+                return 2;
+            case '<':
+            case '>':
+            case '&':
+            case '=':
+            case '\'':
+                return UNICODE_ESCAPE_LENGTH;
+            default:
+                return c < ' ' || c == LINE_SEPARATOR || c == PARAGRAPH_SEPARATOR ? UNICODE_ESCAPE_LENGTH : 0;
+        }
+    }
+
+    private static char shortEscape(char c) {
+        switch (c) {
+            case '\t':
+                return 't';
+            case '\b':
+                return 'b';
+            case '\n':
+                return 'n';
+            case '\r':
+                return 'r';
+            case '\f':
+                return 'f';
+            default:
+                return c;
+        }
+    }
+
+    private static byte[] ascii(String value) {
+        byte[] bytes = new byte[value.length()];
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) value.charAt(i);
+        }
+        return bytes;
+    }
+}
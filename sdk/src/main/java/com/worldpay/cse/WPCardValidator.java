@@ -9,10 +9,7 @@
 
 package com.worldpay.cse;
 
-import java.util.Calendar;
-import java.util.HashSet;
 import java.util.Set;
-import java.util.regex.Pattern;
 
 /**
  * Card data field validator
@@ -20,9 +17,9 @@ import java.util.regex.Pattern;
  The following is list of error codes mapped to their meanings which would be provided back to the caller application.
  <ul>
  •	101 - Credit card number is mandatory. <br>
- •	102 - Enter a valid credit card number, numbers only and should be between 12 and 20 digits.<br>
+ •	102 - Enter a valid credit card number, numbers only and should be between 12 and 20 digits (or of a length of its brand).<br>
  •	103 - Enter a valid credit card number, input doesn't verify Luhn check.<br>
- •	201 - Enter a valid security code, numbers only and should be between 3 and 4 digits.<br>
+ •	201 - Enter a valid security code, numbers only and should be between 3 and 4 digits (or of the length of the card brand).<br>
  •	301 - Expiry month is mandatory.<br>
  •	302 - Enter a valid expiry month; only numbers expected and in XX form (e.g. 09).<br>
  •	303 - Enter a valid expiry month, should range from 01 to 12.<br>
@@ -36,31 +33,56 @@ import java.util.regex.Pattern;
  */
 class WPCardValidator {
 
-    private static final String EX_MONTH_PATTERN = "^[0-9]{2}$";
-    private static final String EX_YEAR_PATTERN = "^[0-9]{4}$";
-    private static final String CARD_NUMBER_PATTERN = "[0-9]{12,20}";
-    private static final String CARD_HOLDER_PATTERN = "^.{1,30}$";
-    private static final String CVC_PATTERN = "^[0-9]{3,4}$";
+    static final int EX_MONTH_LENGTH = 2;
+    static final int EX_YEAR_LENGTH = 4;
+    static final int CARD_NUMBER_MIN_LENGTH = 12;
+    static final int CARD_NUMBER_MAX_LENGTH = 20;
+    private static final int CARD_HOLDER_MAX_LENGTH = 30;
 
-    private static final int MAX_SINGLE_DIGIT_NUMBER = 9;
-    private static final int DIVIDER_VALUE = 10;
+    static final int MAX_SINGLE_DIGIT_NUMBER = 9;
+    static final int DIVIDER_VALUE = 10;
     private static final int AMPLIFIER_VALUE = 2;
 
-    private static final int INVALID_MONTH = 300;
+    static final int INVALID_MONTH = 300;
     private static final int INVALID_MONTH_2 = 303;
-    private static final int INVALID_YEAR = 303;
+    static final int INVALID_YEAR = 303;
     private static final int INVALID_DATE = 306;
     private static final int INVALID_CARD_HOLDER_NAME = 400;
     private static final int INVALID_CVC = 201;
     private static final int INVALID_CARD_NUMBER = 100;
     private static final int INVALID_LUHN = 103;
 
-    private static final int MIN_MONTH = 1;
-    private static final int MAX_MONTH = 12;
-    private static final int EMPTY_VALUE = 1;
-    private static final int INVALID_VALUE = 2;
+    static final int MIN_MONTH = 1;
+    static final int MAX_MONTH = 12;
+    static final int EMPTY_VALUE = 1;
+    static final int INVALID_VALUE = 2;
     private static final int NO_ERROR = 0;
 
+    //length of the "!/x/" values that the former regex based emptiness check treated as empty
+    static final int LEGACY_EMPTY_LENGTH = 4;
+
+    private final WPClock clock;
+
+    /**
+     * Creates a validator that checks the expiry dates against the system clock
+     */
+    public WPCardValidator() {
+        this(WPClock.getSystemClock());
+    }
+
+    /**
+     * Creates a validator that checks the expiry dates against the provided clock
+     *
+     * @param clock the clock
+     */
+    public WPCardValidator(WPClock clock) {
+        this.clock = clock;
+    }
+
+    WPClock getClock() {
+        return clock;
+    }
+
     /**
      * Validates card data.
      *
@@ -68,85 +90,146 @@ class WPCardValidator {
      * @return the list of error codes
      */
     public Set<Integer> validateCardData(WPCardData cardData) {
-        Set<Integer> errorsCodes = new HashSet<>();
-        checkErrorCode(validateCardNumber(cardData.getCardNumber()), errorsCodes);
-        checkErrorCode(validateCvc(cardData.getCvc()), errorsCodes);
-        checkErrorCode(validateMonth(cardData.getExpiryMonth()), errorsCodes);
-        checkErrorCode(validateYear(cardData.getExpiryYear()), errorsCodes);
-        checkErrorCode(validateDate(cardData.getExpiryMonth(), cardData.getExpiryYear()), errorsCodes);
-        checkErrorCode(validateCardHolderName(cardData.getCardHolderName()), errorsCodes);
-        return errorsCodes;
-    }
-
-    private int validateMonth(String expiryMonth) {
-        int validNumber = validateValue(expiryMonth, EX_MONTH_PATTERN);
+        return WPValidationResult.valueOf(validate(cardData)).toSet();
+    }
+
+    /**
+     * Validates card data without allocating anything.
+     *
+     * @param cardData the card data object
+     * @return the bit mask of error codes, see {@link WPValidationResult}
+     */
+    public int validate(WPCardData cardData) {
+        return validate(cardData.getCardNumber(), cardData.getCvc(), cardData.getExpiryMonth(),
+                cardData.getExpiryYear(), cardData.getCardHolderName());
+    }
+
+    /**
+     * Validates card field values without allocating anything.
+     *
+     * @return the bit mask of error codes, see {@link WPValidationResult}
+     */
+    public int validate(String cardNumber, String cvc, String expiryMonth, String expiryYear,
+                        String cardHolderName) {
+        WPCardBrand brand = WPCardBrand.detect(cardNumber);
+        int monthError = validateMonth(expiryMonth);
+        int yearError = validateYear(expiryYear);
+        int errors = WPValidationResult.bit(validateCardNumber(cardNumber, brand))
+                | WPValidationResult.bit(validateCvc(cvc, brand))
+                | WPValidationResult.bit(monthError)
+                | WPValidationResult.bit(yearError)
+                | WPValidationResult.bit(validateCardHolderName(cardHolderName));
+        if (monthError == NO_ERROR && yearError == NO_ERROR) {
+            errors |= WPValidationResult.bit(validateDate(expiryMonth, expiryYear));
+        }
+        return errors;
+    }
+
+    static int validateMonth(String expiryMonth) {
+        int validNumber = validateDigits(expiryMonth, EX_MONTH_LENGTH, EX_MONTH_LENGTH);
         if (validNumber != NO_ERROR) {
             return INVALID_MONTH + validNumber;
         }
-        int exMonth = Integer.parseInt(expiryMonth);
+        int exMonth = parseDigits(expiryMonth);
         if (exMonth < MIN_MONTH || exMonth > MAX_MONTH) {
             return INVALID_MONTH_2;
         }
         return NO_ERROR;
     }
 
-    private int validateYear(String expiryYear) {
-        int validNumber = validateValue(expiryYear, EX_YEAR_PATTERN);
+    static int validateYear(String expiryYear) {
+        int validNumber = validateDigits(expiryYear, EX_YEAR_LENGTH, EX_YEAR_LENGTH);
         if (validNumber != NO_ERROR) {
             return INVALID_YEAR + validNumber;
         }
         return NO_ERROR;
     }
 
+    //expects a month and a year that already passed validateMonth and validateYear
     private int validateDate(String expiryMonth, String expiryYear) {
-        if (validateMonth(expiryMonth) == NO_ERROR && validateYear(expiryYear) == NO_ERROR) {
-            int exMonth = Integer.parseInt(expiryMonth);
-            int exYear = Integer.parseInt(expiryYear);
-            if (!isFutureDate(exMonth, exYear)) {
-                return INVALID_DATE;
-            }
+        if (!isFutureDate(clock, parseDigits(expiryMonth), parseDigits(expiryYear))) {
+            return INVALID_DATE;
         }
         return NO_ERROR;
     }
 
-    private int validateValue(String value, String pattern) {
-        if (isEmpty(value) || isEmpty(value.trim())) {
-            return EMPTY_VALUE;
-        }
-        if(!evaluateRegex(value, pattern)) {
-            return INVALID_VALUE;
-        }
-        return NO_ERROR;
+    static boolean isFutureDate(WPClock clock, int expiryMonth, int expiryYear) {
+        return WPClock.yearMonth(expiryYear, expiryMonth) >= clock.getCurrentYearMonth();
     }
 
-    private boolean isFutureDate(int expiryMonth, int expiryYear) {
-        Calendar now = Calendar.getInstance();
-        int currentMonth = now.get(Calendar.MONTH);
-        int currentYear = now.get(Calendar.YEAR);
-        return (expiryYear * 12) + (expiryMonth - 1) >= (currentYear * 12) + currentMonth;
-    }
-
-    private int validateCardHolderName(String cardHolderName) {
-        int valid = validateValue(cardHolderName, CARD_HOLDER_PATTERN);
-        if (valid != NO_ERROR) {
-            return INVALID_CARD_HOLDER_NAME + valid;
+    static int validateCardHolderName(String cardHolderName) {
+        if (isBlank(cardHolderName)) {
+            return INVALID_CARD_HOLDER_NAME + EMPTY_VALUE;
+        }
+        //at most 30 code points and no line terminator, as the former ^.{1,30}$ pattern
+        int length = 0;
+        int size = cardHolderName.length();
+        for (int i = 0; i < size; i++) {
+            char c = cardHolderName.charAt(i);
+            if (isLineTerminator(c)) {
+                return INVALID_CARD_HOLDER_NAME + INVALID_VALUE;
+            }
+            if (Character.isHighSurrogate(c) && i + 1 < size && Character.isLowSurrogate(cardHolderName.charAt(i + 1))) {
+                i++;
+            }
+            length++;
+        }
+        if (length > CARD_HOLDER_MAX_LENGTH) {
+            return INVALID_CARD_HOLDER_NAME + INVALID_VALUE;
         }
         return NO_ERROR;
     }
 
-    private int validateCvc(String cvc) {
-        if (isEmpty(cvc) || evaluateRegex(cvc, CVC_PATTERN)) {
+    //the CVC length is the one of the brand, or between 3 and 4 digits if the brand is unknown
+    static int validateCvc(String cvc, WPCardBrand brand) {
+        //unlike the other fields, a CVC made of white spaces only is not considered empty
+        if (cvc == null || cvc.isEmpty() || isLegacyEmpty(cvc, 0, cvc.length())) {
             return NO_ERROR;
-        } else {
+        }
+        int length = cvc.length();
+        if (!brand.isValidCvcLength(length)) {
             return INVALID_CVC;
         }
+        for (int i = 0; i < length; i++) {
+            if (!isDigit(cvc.charAt(i))) {
+                return INVALID_CVC;
+            }
+        }
+        return NO_ERROR;
     }
 
-    private int validateCardNumber(String cardNumber) {
-        int valid = validateValue(cardNumber, CARD_NUMBER_PATTERN);
-        if (valid != NO_ERROR) {
-            return INVALID_CARD_NUMBER + valid;
-        } else if (!validateLuhn(cardNumber)) {
+    //the card number length must be one of the brand, within the generic 12 to 20 digits
+    static int validateCardNumber(String cardNumber, WPCardBrand brand) {
+        if (cardNumber == null) {
+            return INVALID_CARD_NUMBER + EMPTY_VALUE;
+        }
+        //the digit sums for the two possible positions of the check digit, so the Luhn check fits in the
+        //same left to right pass as the other checks
+        int evenSum = 0;
+        int oddSum = 0;
+        int length = cardNumber.length();
+        for (int i = 0; i < length; i++) {
+            int digit = cardNumber.charAt(i) - '0';
+            if (digit < 0 || digit > MAX_SINGLE_DIGIT_NUMBER) {
+                return isBlank(cardNumber) ? INVALID_CARD_NUMBER + EMPTY_VALUE : INVALID_CARD_NUMBER + INVALID_VALUE;
+            }
+            if ((i & 1) == 0) {
+                evenSum += doubleDigit(digit);
+                oddSum += digit;
+            } else {
+                evenSum += digit;
+                oddSum += doubleDigit(digit);
+            }
+        }
+        if (length == 0) {
+            return INVALID_CARD_NUMBER + EMPTY_VALUE;
+        }
+        if (length < CARD_NUMBER_MIN_LENGTH || length > CARD_NUMBER_MAX_LENGTH || !brand.isValidLength(length)) {
+            return INVALID_CARD_NUMBER + INVALID_VALUE;
+        }
+        //the rightmost digit is never doubled
+        int sum = (length & 1) == 0 ? evenSum : oddSum;
+        if (sum % DIVIDER_VALUE != 0) {
             return INVALID_LUHN;
         }
         return NO_ERROR;
@@ -158,13 +241,13 @@ class WPCardValidator {
         boolean alternate = false;
 
         for (int i = value.length() - 1; i >= 0; i--) {
-            int nDigit = Integer.parseInt(String.valueOf(value.charAt(i)));
+            int nDigit = value.charAt(i) - '0';
+            if (nDigit < 0 || nDigit > MAX_SINGLE_DIGIT_NUMBER) {
+                return false;
+            }
 
             if (alternate) {
-                nDigit *= AMPLIFIER_VALUE;
-                if (nDigit > MAX_SINGLE_DIGIT_NUMBER) {
-                    nDigit -= MAX_SINGLE_DIGIT_NUMBER;
-                }
+                nDigit = doubleDigit(nDigit);
             }
             nCheck += nDigit;
             alternate = !alternate;
@@ -173,21 +256,82 @@ class WPCardValidator {
         return (nCheck % DIVIDER_VALUE) == 0;
     }
 
-    private boolean checkErrorCode(int errorCode, Set<Integer> errorsCodes) {
-        if (errorCode != NO_ERROR) {
-            errorsCodes.add(errorCode);
-            return false;
-        } else {
+    static int doubleDigit(int digit) {
+        int doubled = digit * AMPLIFIER_VALUE;
+        return doubled > MAX_SINGLE_DIGIT_NUMBER ? doubled - MAX_SINGLE_DIGIT_NUMBER : doubled;
+    }
+
+    //checks a value made of digits only, in a single pass
+    private static int validateDigits(String value, int minLength, int maxLength) {
+        if (value == null) {
+            return EMPTY_VALUE;
+        }
+        int length = value.length();
+        for (int i = 0; i < length; i++) {
+            if (!isDigit(value.charAt(i))) {
+                return isBlank(value) ? EMPTY_VALUE : INVALID_VALUE;
+            }
+        }
+        if (length == 0) {
+            return EMPTY_VALUE;
+        }
+        if (length < minLength || length > maxLength) {
+            return INVALID_VALUE;
+        }
+        return NO_ERROR;
+    }
+
+    //expects a short value made of digits only
+    private static int parseDigits(String value) {
+        int result = 0;
+        for (int i = 0; i < value.length(); i++) {
+            result = result * DIVIDER_VALUE + (value.charAt(i) - '0');
+        }
+        return result;
+    }
+
+    /**
+     * Returns whether the value is null, empty or white space only (in the sense of {@link String#trim()}).
+     * For compatibility with the former regex based check, "!/x/" values, where x is not a white space, are
+     * empty as well, on their own or surrounded by white spaces.
+     */
+    static boolean isBlank(CharSequence value) {
+        if (value == null) {
             return true;
         }
+        int end = value.length();
+        if (isLegacyEmpty(value, 0, end)) {
+            return true;
+        }
+        int start = 0;
+        while (start < end && value.charAt(start) <= ' ') {
+            start++;
+        }
+        while (end > start && value.charAt(end - 1) <= ' ') {
+            end--;
+        }
+        return start == end || isLegacyEmpty(value, start, end);
+    }
+
+    static boolean isLegacyEmpty(CharSequence value, int start, int end) {
+        return end - start == LEGACY_EMPTY_LENGTH
+                && value.charAt(start) == '!'
+                && value.charAt(start + 1) == '/'
+                && !isRegexWhiteSpace(value.charAt(start + 2))
+                && value.charAt(start + 3) == '/';
     }
 
-    private boolean evaluateRegex(String data, String re) {
-        return Pattern.matches(re, data);
+    //the \s character class
+    private static boolean isRegexWhiteSpace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\u000B' || c == '\f' || c == '\r';
     }
 
-    private boolean isEmpty(String data) {
-        return (data == null) || "".equals(data) || evaluateRegex(data, "!/[^\\s]/");
+    //the line terminators that the . pattern does not match
+    private static boolean isLineTerminator(char c) {
+        return c == '\n' || c == '\r' || c == '\u0085' || c == '\u2028' || c == '\u2029';
     }
 
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
 }
@@ -0,0 +1,132 @@
+//
+//  WPClock.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.util.Calendar;
+
+/**
+ * Source of the current month, used to check that the expiry date of a card is in the future.
+ * <p>
+ * The system clock, see {@link WPClock#getSystemClock()}, caches the current month and only reads the calendar
+ * again once the month is over, so checking an expiry date does not allocate anything. A fixed clock, see
+ * {@link WPClock#fixed(int, int)}, always returns the same month, which makes the expiry date checks
+ * deterministic in tests.
+ * </p>
+ */
+public abstract class WPClock {
+
+    private static final int MONTHS_PER_YEAR = 12;
+    private static final int MIN_MONTH = 1;
+    private static final int MAX_MONTH = 12;
+
+    private static final WPClock SYSTEM = new SystemClock();
+
+    /**
+     * Returns the current month as a month count, <code>year * 12 + month - 1</code>, where month ranges
+     * from 1 to 12
+     *
+     * @return the current month count
+     */
+    public abstract int getCurrentYearMonth();
+
+    /**
+     * Returns the month count of the provided month
+     *
+     * @param year the year, e.g. 2015
+     * @param month the month, from 1 to 12
+     * @return the month count, as returned by {@link WPClock#getCurrentYearMonth()}
+     */
+    public static int yearMonth(int year, int month) {
+        return year * MONTHS_PER_YEAR + month - 1;
+    }
+
+    /**
+     * Returns the clock that follows the system time, in the default time zone
+     *
+     * @return the system clock
+     */
+    public static WPClock getSystemClock() {
+        return SYSTEM;
+    }
+
+    /**
+     * Returns a clock that is always at the provided month
+     *
+     * @param year the year, e.g. 2015
+     * @param month the month, from 1 to 12
+     * @return the fixed clock
+     * @throws IllegalArgumentException if the month is not between 1 and 12
+     */
+    public static WPClock fixed(int year, int month) {
+        if (month < MIN_MONTH || month > MAX_MONTH) {
+            throw new IllegalArgumentException("Invalid month: " + month);
+        }
+        return new FixedClock(yearMonth(year, month));
+    }
+
+    /**
+     * Clock that follows the system time. The month and its bounds are published together in one immutable
+     * object, so concurrent readers never see a month with the bounds of another one. The default time zone
+     * is read again at each refresh.
+     */
+    private static final class SystemClock extends WPClock {
+
+        private volatile Month current;
+
+        @Override
+        public int getCurrentYearMonth() {
+            long now = System.currentTimeMillis();
+            Month month = current;
+            //also refreshes when the system time is set back before the cached month
+            if (month == null || now < month.start || now >= month.end) {
+                month = new Month(now);
+                current = month;
+            }
+            return month.yearMonth;
+        }
+    }
+
+    /**
+     * A calendar month, with its bounds in milliseconds since the epoch
+     */
+    private static final class Month {
+
+        final int yearMonth;
+        final long start;
+        final long end;
+
+        Month(long now) {
+            Calendar calendar = Calendar.getInstance();
+            calendar.setTimeInMillis(now);
+            yearMonth = yearMonth(calendar.get(Calendar.YEAR), calendar.get(Calendar.MONTH) + 1);
+            calendar.set(Calendar.DAY_OF_MONTH, 1);
+            calendar.set(Calendar.HOUR_OF_DAY, 0);
+            calendar.set(Calendar.MINUTE, 0);
+            calendar.set(Calendar.SECOND, 0);
+            calendar.set(Calendar.MILLISECOND, 0);
+            start = calendar.getTimeInMillis();
+            calendar.add(Calendar.MONTH, 1);
+            end = calendar.getTimeInMillis();
+        }
+    }
+
+    private static final class FixedClock extends WPClock {
+
+        private final int yearMonth;
+
+        FixedClock(int yearMonth) {
+            this.yearMonth = yearMonth;
+        }
+
+        @Override
+        public int getCurrentYearMonth() {
+            return yearMonth;
+        }
+    }
+}
@@ -0,0 +1,59 @@
+//
+//  WPCompletableFutures.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.util.concurrent.CompletableFuture;
+
+import com.worldpay.cse.exception.WPCSEException;
+import com.worldpay.cse.exception.WPCSEInvalidCardData;
+
+/**
+ * {@link CompletableFuture} based variants of the asynchronous calls of {@link WorldpayCSE}.
+ * <p>
+ * <b>Requires Java 8, or Android 7.0 (API level 24) and higher.</b> They are kept out of {@link WorldpayCSE} so
+ * that its signatures do not use {@link CompletableFuture}; on older Android versions, use
+ * {@link WorldpayCSE#encryptAsync(WPCardData, WPEncryptionCallback)} instead.
+ * </p>
+ */
+public final class WPCompletableFutures {
+
+    private WPCompletableFutures() {
+    }
+
+    /**
+     * Validates and encrypts the supplied card data on the encryption executor of <code>worldpayCSE</code>,
+     * without blocking the calling thread. The public key set at the time of this call is used, even if it is
+     * changed before the encryption starts.
+     * <br>
+     * The returned future completes exceptionally with a {@link WPCSEInvalidCardData} if any validation
+     * error occurs, or with a generic {@link WPCSEException} if the encryption failed or the executor
+     * rejected the request because too many encryptions are already pending.
+     *
+     * @param worldpayCSE the WorldpayCSE object holding the public key and the executor
+     * @param cardData An object containing information about the card details to encrypt.
+     * @return a future of the encrypted data to be submitted for processing
+     *
+     * @see WorldpayCSE#setExecutor(java.util.concurrent.Executor)
+     */
+    public static CompletableFuture<String> encryptAsync(WorldpayCSE worldpayCSE, WPCardData cardData) {
+        final CompletableFuture<String> future = new CompletableFuture<>();
+        worldpayCSE.encryptAsync(cardData, new WPEncryptionCallback() {
+            @Override
+            public void onSuccess(String encryptedData) {
+                future.complete(encryptedData);
+            }
+
+            @Override
+            public void onError(WPCSEException e) {
+                future.completeExceptionally(e);
+            }
+        });
+        return future;
+    }
+}
@@ -0,0 +1,33 @@
+//
+//  WPEncryptionCallback.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import com.worldpay.cse.exception.WPCSEException;
+import com.worldpay.cse.exception.WPCSEInvalidCardData;
+
+/**
+ * Receives the outcome of {@link WorldpayCSE#encryptAsync(WPCardData, WPEncryptionCallback)}. Both methods are
+ * called on the encryption thread, so UI code must switch back to its own thread before touching any view.
+ */
+public interface WPEncryptionCallback {
+
+    /**
+     * Called when the card data was encrypted
+     *
+     * @param encryptedData the encrypted data to be submitted for processing
+     */
+    void onSuccess(String encryptedData);
+
+    /**
+     * Called when the card data could not be encrypted
+     *
+     * @param e could be an instance of {@link WPCSEInvalidCardData} or other generic instance
+     */
+    void onError(WPCSEException e);
+}
@@ -0,0 +1,102 @@
+//
+//  WPEncryptionResult.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import com.worldpay.cse.exception.WPCSEException;
+
+import java.util.Set;
+
+/**
+ * The outcome of encrypting a single {@link WPCardData} object. It holds either the encrypted data, the
+ * validation error codes of the card, or the error that made the encryption fail, together with the sequence
+ * number of the key used.
+ */
+public class WPEncryptionResult {
+
+    private final String encryptedData;
+    private final WPValidationResult validationResult;
+    private final WPCSEException error;
+    private final String keySeqNo;
+
+    private WPEncryptionResult(String encryptedData, WPValidationResult validationResult, WPCSEException error,
+                               String keySeqNo) {
+        this.encryptedData = encryptedData;
+        this.validationResult = validationResult;
+        this.error = error;
+        this.keySeqNo = keySeqNo;
+    }
+
+    static WPEncryptionResult success(String encryptedData, String keySeqNo) {
+        return new WPEncryptionResult(encryptedData, WPValidationResult.VALID, null, keySeqNo);
+    }
+
+    static WPEncryptionResult invalid(WPValidationResult validationResult, String keySeqNo) {
+        return new WPEncryptionResult(null, validationResult, null, keySeqNo);
+    }
+
+    static WPEncryptionResult failure(WPCSEException error, String keySeqNo) {
+        return new WPEncryptionResult(null, WPValidationResult.VALID, error, keySeqNo);
+    }
+
+    /**
+     * Returns whether the card data was encrypted
+     *
+     * @return true if {@link WPEncryptionResult#getEncryptedData()} holds the encrypted data
+     */
+    public boolean isSuccess() {
+        return encryptedData != null;
+    }
+
+    /**
+     * Returns the encrypted data to be submitted for processing
+     *
+     * @return the encrypted data, or null if the encryption did not succeed
+     */
+    public String getEncryptedData() {
+        return encryptedData;
+    }
+
+    /**
+     * Returns the validation error codes of the card data
+     *
+     * @return the error codes, or an empty set if the card data is valid
+     *
+     * @see WPValidationErrorCodes
+     */
+    public Set<Integer> getErrorCodes() {
+        return validationResult.toSet();
+    }
+
+    /**
+     * Returns the validation result of the card data
+     *
+     * @return the validation result, {@link WPValidationResult#VALID} if the card data is valid
+     */
+    public WPValidationResult getValidationResult() {
+        return validationResult;
+    }
+
+    /**
+     * Returns the error that made the encryption of valid card data fail
+     *
+     * @return the error, or null if there was no such error
+     */
+    public WPCSEException getError() {
+        return error;
+    }
+
+    /**
+     * Returns the sequence number of the public key the card data was, or would have been, encrypted with
+     *
+     * @return the key sequence number, or null if there was no key or it has no sequence number
+     */
+    public String getKeySeqNo() {
+        return keySeqNo;
+    }
+}
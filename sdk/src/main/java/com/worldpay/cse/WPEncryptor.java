@@ -0,0 +1,312 @@
+//
+//  WPEncryptor.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import com.worldpay.cse.exception.WPCSEException;
+import com.worldpay.cse.exception.WPCSEInvalidCardData;
+import com.worldpay.cse.exception.WPCSEInvalidPublicKey;
+import com.worldpay.cse.exception.WPCSEMissingInput;
+import com.worldpay.cse.jwe.WPAESGCMBackend;
+import com.worldpay.cse.jwe.WPAESGCMBackends;
+import com.worldpay.cse.jwe.WPJWEObject;
+import com.worldpay.cse.jwe.WPKeyEnvelope;
+
+/**
+ * Immutable card data encryptor, built once by a {@link WPEncryptor.Builder} and then shared freely across
+ * threads. It owns everything that does not change from one encryption to the next: the public key with its
+ * prepared JWE header, the AES-GCM backend and the card validator.
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WPEncryptor encryptor = new WPEncryptor.Builder()
+ *          .setPublicKey("1#10001#bf49edcaba456c...")
+ *          .build();
+ *
+ *  //from any thread
+ *  try {
+ *      String encryptedData = encryptor.encrypt(cardData);
+ *  } catch (WPCSEException e) {
+ *     //show error message
+ *  }
+ * </pre>
+ */
+public final class WPEncryptor {
+
+    private final WPKeyContext context;
+    private final WPAESGCMBackend backend;
+    private final WPCardValidator validator;
+    private final boolean validationEnabled;
+    private final WPKeyEnvelopePool keyEnvelopePool;
+
+    private WPEncryptor(Builder builder) {
+        this.context = new WPKeyContext(builder.publicKey);
+        this.backend = builder.backend != null ? builder.backend : WPAESGCMBackends.getDefault();
+        this.validator = new WPCardValidator(builder.clock != null ? builder.clock : WPClock.getSystemClock());
+        this.validationEnabled = builder.validationEnabled;
+        this.keyEnvelopePool = builder.keyEnvelopePool;
+        if (keyEnvelopePool != null) {
+            keyEnvelopePool.setKey(builder.publicKey);
+        }
+    }
+
+    /**
+     * Validates and encrypts the supplied card data. If any validation error occurs, it will throw a
+     * {@link WPCSEInvalidCardData} exception that contains all error codes.
+     *
+     * @param cardData An object containing information about the card details to encrypt.
+     * @return The encrypted data to be submitted for processing.
+     *
+     * @throws WPCSEException could be an instance of {@link WPCSEInvalidCardData} or other generic instance.
+     */
+    public String encrypt(WPCardData cardData) throws WPCSEException {
+        if (validationEnabled) {
+            int errors = validator.validate(cardData);
+            if (errors != 0) {
+                throw new WPCSEInvalidCardData(WPValidationResult.valueOf(errors).toSet());
+            }
+        }
+        WPKeyEnvelope envelope = keyEnvelopePool != null ? keyEnvelopePool.take(context.getPublicKey()) : null;
+        return encrypt(context, backend, envelope, WPCardDataWriter.write(cardData));
+    }
+
+    /**
+     * Encrypts card data validated beforehand with {@link WPEncryptor#validateForEncryption(WPCardData)}, without
+     * validating it again unless the month has changed since
+     *
+     * @param cardData the validated card data
+     * @return The encrypted data to be submitted for processing.
+     *
+     * @throws WPCSEException if the card data has been changed since it was validated, or could be an instance
+     * of {@link WPCSEInvalidCardData}
+     */
+    public String encrypt(WPValidatedCardData cardData) throws WPCSEException {
+        if (!cardData.isCurrent()) {
+            throw new WPCSEException("Card data changed since it was validated");
+        }
+        if (validationEnabled) {
+            int errors = cardData.getErrors(validator);
+            if (errors != 0) {
+                throw new WPCSEInvalidCardData(WPValidationResult.valueOf(errors).toSet());
+            }
+        }
+        WPKeyEnvelope envelope = keyEnvelopePool != null ? keyEnvelopePool.take(context.getPublicKey()) : null;
+        return encrypt(context, backend, envelope, cardData.write());
+    }
+
+    /**
+     * Validates and encrypts the supplied card data like {@link WPEncryptor#encrypt(WPCardData)}, but reports
+     * the outcome in the returned result instead of throwing an exception
+     *
+     * @param cardData An object containing information about the card details to encrypt.
+     * @return the encrypted data, or else the validation errors of the card or the error that made the
+     * encryption fail, together with the sequence number of the key of this encryptor
+     */
+    public WPEncryptionResult tryEncrypt(WPCardData cardData) {
+        String keySeqNo = context.getPublicKey().getKeySeqNo();
+        if (cardData == null) {
+            return WPEncryptionResult.failure(new WPCSEMissingInput(WPCSEMissingInput.CARD_DATA_NOT_SET), keySeqNo);
+        }
+        if (validationEnabled) {
+            int errors = validator.validate(cardData);
+            if (errors != 0) {
+                return WPEncryptionResult.invalid(WPValidationResult.valueOf(errors), keySeqNo);
+            }
+        }
+        try {
+            WPKeyEnvelope envelope = keyEnvelopePool != null ? keyEnvelopePool.take(context.getPublicKey()) : null;
+            return WPEncryptionResult.success(encrypt(context, backend, envelope, WPCardDataWriter.write(cardData)),
+                    keySeqNo);
+        } catch (WPCSEException e) {
+            return WPEncryptionResult.failure(e, keySeqNo);
+        } catch (RuntimeException e) {
+            return WPEncryptionResult.failure(new WPCSEException(e.getMessage(), e), keySeqNo);
+        }
+    }
+
+    /**
+     * Validates the supplied card data the way {@link WPEncryptor#encrypt(WPCardData)} does, with the clock of
+     * this encryptor
+     *
+     * @param cardData the card data
+     * @return the validation result, {@link WPValidationResult#VALID} if there is no error
+     */
+    public WPValidationResult validate(WPCardData cardData) {
+        return WPValidationResult.valueOf(validator.validate(cardData));
+    }
+
+    /**
+     * Validates the supplied card data with the clock of this encryptor, and returns its values together with
+     * the validation result for {@link WPEncryptor#encrypt(WPValidatedCardData)}
+     *
+     * @param cardData the card data
+     * @return the validated card data
+     * @throws WPCSEException if <code>cardData</code> is null
+     */
+    public WPValidatedCardData validateForEncryption(WPCardData cardData) throws WPCSEException {
+        return WPValidatedCardData.validate(cardData, validator);
+    }
+
+    /**
+     * Returns the public key of this encryptor
+     *
+     * @return the public key
+     */
+    public WPPublicKey getPublicKey() {
+        return context.getPublicKey();
+    }
+
+    /**
+     * Returns the AES-GCM backend of this encryptor
+     *
+     * @return the backend
+     */
+    public WPAESGCMBackend getBackend() {
+        return backend;
+    }
+
+    /**
+     * Returns the clock that the expiry dates are checked against
+     *
+     * @return the clock
+     */
+    public WPClock getClock() {
+        return validator.getClock();
+    }
+
+    /**
+     * Returns whether the card data is validated before being encrypted
+     *
+     * @return true if the card data is validated
+     */
+    public boolean isValidationEnabled() {
+        return validationEnabled;
+    }
+
+    /**
+     * Returns the pool of pre-generated key envelopes of this encryptor
+     *
+     * @return the pool, or null if there is none
+     */
+    public WPKeyEnvelopePool getKeyEnvelopePool() {
+        return keyEnvelopePool;
+    }
+
+    /**
+     * Encrypts the JSON payload of a card with the prepared state of a key
+     *
+     * @param backend the AES-GCM backend, or null to use the default one
+     * @param envelope the pre-generated key material, or null to generate it
+     */
+    static String encrypt(WPKeyContext context, WPAESGCMBackend backend, WPKeyEnvelope envelope, byte[] data) {
+        WPJWEObject jweObject = new WPJWEObject(context.getHeader(), data);
+        jweObject.setKey(context.getPublicKey().getKey());
+        jweObject.setBackend(backend);
+        if (envelope != null) {
+            jweObject.encrypt(envelope);
+        } else {
+            jweObject.encrypt();
+        }
+        return jweObject.serialize();
+    }
+
+    /**
+     * Builder of {@link WPEncryptor} objects. A builder is not thread safe, but the encryptors it builds are.
+     */
+    public static final class Builder {
+
+        private WPPublicKey publicKey;
+        private WPAESGCMBackend backend;
+        private WPClock clock;
+        private boolean validationEnabled = true;
+        private WPKeyEnvelopePool keyEnvelopePool;
+
+        /**
+         * Sets the public key, in the Worldpay text format, see {@link WorldpayCSE#setPublicKey(String)}
+         *
+         * @param publicKey the public key in Worldpay text format
+         * @return this builder
+         * @throws WPCSEInvalidPublicKey if the public key does not adhere to the Worldpay format
+         */
+        public Builder setPublicKey(String publicKey) throws WPCSEInvalidPublicKey {
+            this.publicKey = WorldpayCSE.getPublicKeyCache().get(publicKey);
+            return this;
+        }
+
+        /**
+         * Sets the public key
+         *
+         * @param publicKey a {@link WPPublicKey} instance
+         * @return this builder
+         */
+        public Builder setPublicKey(WPPublicKey publicKey) {
+            this.publicKey = publicKey;
+            return this;
+        }
+
+        /**
+         * Sets the AES-GCM backend of the content encryption
+         *
+         * @param backend the backend, or null to use {@link WPAESGCMBackends#getDefault()}
+         * @return this builder
+         */
+        public Builder setBackend(WPAESGCMBackend backend) {
+            this.backend = backend;
+            return this;
+        }
+
+        /**
+         * Sets the clock that the expiry dates are checked against
+         *
+         * @param clock the clock, or null to use the system clock
+         * @return this builder
+         */
+        public Builder setClock(WPClock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        /**
+         * Sets whether the card data is validated before being encrypted, which it is by default. Only turn it
+         * off if the card data is always validated beforehand, e.g. with {@link WorldpayCSE#validateCard(WPCardData)}.
+         *
+         * @param validationEnabled false to skip the validation
+         * @return this builder
+         */
+        public Builder setValidationEnabled(boolean validationEnabled) {
+            this.validationEnabled = validationEnabled;
+            return this;
+        }
+
+        /**
+         * Sets the pool of pre-generated key envelopes, see {@link WPKeyEnvelopePool}. The pool should not be
+         * shared with encryptors or WorldpayCSE objects using another public key.
+         *
+         * @param keyEnvelopePool the pool, or null to generate the key material on every encryption
+         * @return this builder
+         */
+        public Builder setKeyEnvelopePool(WPKeyEnvelopePool keyEnvelopePool) {
+            this.keyEnvelopePool = keyEnvelopePool;
+            return this;
+        }
+
+        /**
+         * Builds the encryptor
+         *
+         * @return a new encryptor
+         * @throws WPCSEException if the public key is not set
+         */
+        public WPEncryptor build() throws WPCSEException {
+            if (publicKey == null) {
+                throw new WPCSEMissingInput(WPCSEMissingInput.PUBLIC_KEY_NOT_SET);
+            }
+            return new WPEncryptor(this);
+        }
+    }
+}
@@ -0,0 +1,358 @@
+//
+//  WPIncrementalValidator.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+/**
+ * Stateful validator for the card number, CVC and expiry date fields while the user is typing them. Each
+ * field keeps its length, the count of its non digit characters and a running Luhn state, so appending or
+ * deleting a character and reading the error codes take constant time, whatever the length of the field.
+ * <p>
+ * The error codes are the same ones {@link WorldpayCSE#validateCard(WPCardData)} reports for the same values.
+ * </p>
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WPIncrementalValidator validator = new WPIncrementalValidator();
+ *  //on each key stroke
+ *  validator.getCardNumber().append(c);
+ *  int errorCode = validator.getCardNumberError();
+ *  //on each back space
+ *  validator.getCardNumber().deleteLast();
+ * </pre>
+ * <p>
+ * Instances are not thread safe; they are meant to be used from the thread that handles the user input.
+ * </p>
+ */
+public class WPIncrementalValidator {
+
+    private static final int NO_ERROR = 0;
+
+    private final WPClock clock;
+    private final Field cardNumber = new Field();
+    private final Field cvc = new Field();
+    private final Field expiryMonth = new Field();
+    private final Field expiryYear = new Field();
+
+    /**
+     * Creates a validator that checks the expiry date against the system clock
+     */
+    public WPIncrementalValidator() {
+        this(WPClock.getSystemClock());
+    }
+
+    /**
+     * Creates a validator that checks the expiry date against the provided clock
+     *
+     * @param clock the clock
+     */
+    public WPIncrementalValidator(WPClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Returns the card number field
+     *
+     * @return the card number field
+     */
+    public Field getCardNumber() {
+        return cardNumber;
+    }
+
+    /**
+     * Returns the CVC field
+     *
+     * @return the CVC field
+     */
+    public Field getCvc() {
+        return cvc;
+    }
+
+    /**
+     * Returns the expiry month field
+     *
+     * @return the expiry month field
+     */
+    public Field getExpiryMonth() {
+        return expiryMonth;
+    }
+
+    /**
+     * Returns the expiry year field
+     *
+     * @return the expiry year field
+     */
+    public Field getExpiryYear() {
+        return expiryYear;
+    }
+
+    /**
+     * Returns the brand of the card number typed so far. Only its leading digits are read, so this takes
+     * constant time as well.
+     *
+     * @return the brand, {@link WPCardBrand#UNKNOWN} if it is not known yet
+     */
+    public WPCardBrand getCardBrand() {
+        return WPCardBrand.detect(cardNumber);
+    }
+
+    /**
+     * Returns the error code of the card number field
+     *
+     * @return {@link WPValidationErrorCodes#EMPTY_CARD_NUMBER}, {@link WPValidationErrorCodes#INVALID_CARD_NUMBER},
+     * {@link WPValidationErrorCodes#INVALID_CARD_NUMBER_BY_LUHN} or 0 if the card number is valid
+     */
+    public int getCardNumberError() {
+        int length = cardNumber.length;
+        if (length == 0) {
+            return WPValidationErrorCodes.EMPTY_CARD_NUMBER;
+        }
+        if (cardNumber.nonDigits > 0) {
+            return cardNumber.isBlank() ? WPValidationErrorCodes.EMPTY_CARD_NUMBER
+                    : WPValidationErrorCodes.INVALID_CARD_NUMBER;
+        }
+        if (length < WPCardValidator.CARD_NUMBER_MIN_LENGTH || length > WPCardValidator.CARD_NUMBER_MAX_LENGTH
+                || !getCardBrand().isValidLength(length)) {
+            return WPValidationErrorCodes.INVALID_CARD_NUMBER;
+        }
+        //the rightmost digit is never doubled
+        int sum = (length & 1) == 0 ? cardNumber.evenSum : cardNumber.oddSum;
+        if (sum % WPCardValidator.DIVIDER_VALUE != 0) {
+            return WPValidationErrorCodes.INVALID_CARD_NUMBER_BY_LUHN;
+        }
+        return NO_ERROR;
+    }
+
+    /**
+     * Returns the error code of the CVC field
+     *
+     * @return {@link WPValidationErrorCodes#INVALID_CVC} or 0 if the CVC is valid or empty
+     */
+    public int getCvcError() {
+        int length = cvc.length;
+        if (length == 0
+                || length == WPCardValidator.LEGACY_EMPTY_LENGTH && WPCardValidator.isLegacyEmpty(cvc, 0, length)) {
+            return NO_ERROR;
+        }
+        if (!getCardBrand().isValidCvcLength(length) || cvc.nonDigits > 0) {
+            return WPValidationErrorCodes.INVALID_CVC;
+        }
+        return NO_ERROR;
+    }
+
+    /**
+     * Returns the error code of the expiry month field
+     *
+     * @return {@link WPValidationErrorCodes#EMPTY_EXPIRY_MONTH}, {@link WPValidationErrorCodes#INVALID_EXPIRY_MONTH},
+     * {@link WPValidationErrorCodes#INVALID_EXPIRY_MONTH_OUT_RANGE} or 0 if the expiry month is valid
+     */
+    public int getExpiryMonthError() {
+        int validNumber = expiryMonth.validateDigits(WPCardValidator.EX_MONTH_LENGTH);
+        if (validNumber != NO_ERROR) {
+            return WPCardValidator.INVALID_MONTH + validNumber;
+        }
+        int month = expiryMonth.parseDigits();
+        if (month < WPCardValidator.MIN_MONTH || month > WPCardValidator.MAX_MONTH) {
+            return WPValidationErrorCodes.INVALID_EXPIRY_MONTH_OUT_RANGE;
+        }
+        return NO_ERROR;
+    }
+
+    /**
+     * Returns the error code of the expiry year field
+     *
+     * @return {@link WPValidationErrorCodes#EMPTY_EXPIRY_YEAR}, {@link WPValidationErrorCodes#INVALID_EXPIRY_YEAR}
+     * or 0 if the expiry year is valid
+     */
+    public int getExpiryYearError() {
+        int validNumber = expiryYear.validateDigits(WPCardValidator.EX_YEAR_LENGTH);
+        if (validNumber != NO_ERROR) {
+            return WPCardValidator.INVALID_YEAR + validNumber;
+        }
+        return NO_ERROR;
+    }
+
+    /**
+     * Returns the error code of the expiry date, checked only once both the expiry month and year are valid
+     *
+     * @return {@link WPValidationErrorCodes#INVALID_EXPIRY_DATE} or 0 if the expiry date is in the future or
+     * the expiry month or year is not valid
+     */
+    public int getExpiryDateError() {
+        if (getExpiryMonthError() != NO_ERROR || getExpiryYearError() != NO_ERROR) {
+            return NO_ERROR;
+        }
+        if (!WPCardValidator.isFutureDate(clock, expiryMonth.parseDigits(), expiryYear.parseDigits())) {
+            return WPValidationErrorCodes.INVALID_EXPIRY_DATE;
+        }
+        return NO_ERROR;
+    }
+
+    /**
+     * Returns the error codes of the card number, CVC and expiry date fields. The card holder name is not part of
+     * this validator, so its error codes are never set.
+     *
+     * @return the bit mask of error codes, see {@link WPValidationResult#valueOf(int)}
+     */
+    public int validate() {
+        return WPValidationResult.bit(getCardNumberError())
+                | WPValidationResult.bit(getCvcError())
+                | WPValidationResult.bit(getExpiryMonthError())
+                | WPValidationResult.bit(getExpiryYearError())
+                | WPValidationResult.bit(getExpiryDateError());
+    }
+
+    /**
+     * Clears all the fields
+     */
+    public void clear() {
+        cardNumber.clear();
+        cvc.clear();
+        expiryMonth.clear();
+        expiryYear.clear();
+    }
+
+    /**
+     * Text of a field, with the running state needed to validate it in constant time
+     */
+    public static final class Field implements CharSequence {
+
+        private static final int INITIAL_CAPACITY = 24;
+
+        private char[] chars = new char[INITIAL_CAPACITY];
+        private int length;
+        private int nonDigits;
+        //characters above the white space range, see WPCardValidator#isBlank
+        private int visible;
+        //the Luhn sums for the two possible positions of the check digit, as in WPCardValidator
+        private int evenSum;
+        private int oddSum;
+
+        Field() {
+        }
+
+        /**
+         * Appends a character at the end of the field
+         *
+         * @param c the character
+         */
+        public void append(char c) {
+            if (length == chars.length) {
+                char[] grown = new char[length * 2];
+                System.arraycopy(chars, 0, grown, 0, length);
+                chars = grown;
+            }
+            chars[length] = c;
+            update(c, length, 1);
+            length++;
+        }
+
+        /**
+         * Deletes the last character of the field, if any
+         */
+        public void deleteLast() {
+            if (length > 0) {
+                length--;
+                update(chars[length], length, -1);
+            }
+        }
+
+        /**
+         * Replaces the whole text of the field, e.g. after a paste or an edit in the middle of the text
+         *
+         * @param text the new text, null clears the field
+         */
+        public void setText(CharSequence text) {
+            clear();
+            if (text != null) {
+                for (int i = 0; i < text.length(); i++) {
+                    append(text.charAt(i));
+                }
+            }
+        }
+
+        /**
+         * Clears the field
+         */
+        public void clear() {
+            length = 0;
+            nonDigits = 0;
+            visible = 0;
+            evenSum = 0;
+            oddSum = 0;
+        }
+
+        private void update(char c, int index, int sign) {
+            if (c > ' ') {
+                visible += sign;
+            }
+            int digit = c - '0';
+            if (digit < 0 || digit > WPCardValidator.MAX_SINGLE_DIGIT_NUMBER) {
+                nonDigits += sign;
+            } else if ((index & 1) == 0) {
+                evenSum += sign * WPCardValidator.doubleDigit(digit);
+                oddSum += sign * digit;
+            } else {
+                evenSum += sign * digit;
+                oddSum += sign * WPCardValidator.doubleDigit(digit);
+            }
+        }
+
+        //only white spaces and the legacy "!/x/" values can be blank, so the text is scanned only when it has
+        //at most WPCardValidator.LEGACY_EMPTY_LENGTH visible characters
+        private boolean isBlank() {
+            return visible == 0 || visible <= WPCardValidator.LEGACY_EMPTY_LENGTH && WPCardValidator.isBlank(this);
+        }
+
+        private int validateDigits(int expectedLength) {
+            if (length == 0) {
+                return WPCardValidator.EMPTY_VALUE;
+            }
+            if (nonDigits > 0) {
+                return isBlank() ? WPCardValidator.EMPTY_VALUE : WPCardValidator.INVALID_VALUE;
+            }
+            if (length != expectedLength) {
+                return WPCardValidator.INVALID_VALUE;
+            }
+            return NO_ERROR;
+        }
+
+        //expects a short value made of digits only
+        private int parseDigits() {
+            int result = 0;
+            for (int i = 0; i < length; i++) {
+                result = result * WPCardValidator.DIVIDER_VALUE + (chars[i] - '0');
+            }
+            return result;
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        @Override
+        public char charAt(int index) {
+            if (index < 0 || index >= length) {
+                throw new IndexOutOfBoundsException("Invalid index: " + index);
+            }
+            return chars[index];
+        }
+
+        @Override
+        public CharSequence subSequence(int start, int end) {
+            return toString().subSequence(start, end);
+        }
+
+        @Override
+        public String toString() {
+            return new String(chars, 0, length);
+        }
+    }
+}
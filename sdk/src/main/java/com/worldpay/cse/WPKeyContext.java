@@ -0,0 +1,51 @@
+//
+//  WPKeyContext.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import com.worldpay.cse.jwe.WPJWEHeader;
+import com.worldpay.cse.jwe.WPJWEProtectedHeader;
+
+/**
+ * Per public key encryption state. Holds the {@link WPPublicKey} together with everything that can be
+ * computed once for it, so it is not rebuilt on each {@link WorldpayCSE#encrypt(WPCardData)} call.
+ */
+class WPKeyContext {
+
+    private final WPPublicKey publicKey;
+    private final WPJWEProtectedHeader header;
+
+    /**
+     * Creates the encryption state for the provided public key
+     *
+     * @param publicKey a {@link WPPublicKey} instance, that must not be null
+     */
+    WPKeyContext(WPPublicKey publicKey) {
+        this.publicKey = publicKey;
+        this.header = new WPJWEProtectedHeader(createHeader(publicKey.getKeySeqNo()));
+    }
+
+    WPPublicKey getPublicKey() {
+        return publicKey;
+    }
+
+    WPJWEProtectedHeader getHeader() {
+        return header;
+    }
+
+    private static WPJWEHeader createHeader(String kid) {
+        WPJWEHeader header = new WPJWEHeader();
+        header.setAlgorithm(WorldpayCSE.RSA_1_5);
+        header.setEncryption(WorldpayCSE.A_256_GCM);
+        header.setKid(kid);
+        header.setApiVersion(WorldpayCSE.API_VERSION);
+        header.setLibVersion(WorldpayCSE.LIB_VERSION);
+        header.setChannel(WorldpayCSE.CHANNEL);
+        return header;
+    }
+}
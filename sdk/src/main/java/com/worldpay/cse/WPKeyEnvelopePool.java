@@ -0,0 +1,199 @@
+//
+//  WPKeyEnvelopePool.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.security.Key;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.worldpay.cse.exception.WPCSEException;
+import com.worldpay.cse.jwe.WPKeyEnvelope;
+
+/**
+ * Pool of pre-generated {@link WPKeyEnvelope}s for the active public key. The random content keys, IVs and
+ * the RSA encryption of the content keys are done ahead of time on a worker thread, so that an encryption
+ * only has the AES-GCM step and the serialisation left.
+ * <p>
+ * The pool is refilled up to its depth whenever an envelope is taken. Each envelope is handed out at most
+ * once, and the envelopes of the previous key are dropped as soon as the key changes. When the pool is empty,
+ * e.g. right after a key change, the encryption generates its key material itself, as without a pool.
+ * </p>
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WorldpayCSE worldpayCSE = new WorldpayCSE();
+ *  worldpayCSE.setKeyEnvelopePool(new WPKeyEnvelopePool(4));
+ *  worldpayCSE.setPublicKey(publicKey); //starts filling the pool
+ *  //later on, when the customer taps "Pay"
+ *  String encryptedData = worldpayCSE.encrypt(cardData);
+ * </pre>
+ */
+public class WPKeyEnvelopePool {
+
+    private static final int REFILL_QUEUE_CAPACITY = 16;
+
+    private final int depth;
+    private final Executor refillExecutor;
+    private volatile Generation current;
+
+    /**
+     * Creates a pool refilled by a shared worker thread
+     *
+     * @param depth the maximum number of envelopes kept ready
+     */
+    public WPKeyEnvelopePool(int depth) {
+        this(depth, null);
+    }
+
+    /**
+     * Creates a pool refilled by the provided executor
+     *
+     * @param depth the maximum number of envelopes kept ready
+     * @param refillExecutor the executor that generates the envelopes, or null to use a shared worker thread
+     * @throws IllegalArgumentException if <code>depth</code> is not positive
+     */
+    public WPKeyEnvelopePool(int depth, Executor refillExecutor) {
+        if (depth <= 0) {
+            throw new IllegalArgumentException("Invalid pool depth: " + depth);
+        }
+        this.depth = depth;
+        this.refillExecutor = refillExecutor;
+    }
+
+    /**
+     * Makes the provided key the one of the pool, dropping the envelopes of the previous key, and starts
+     * filling the pool for it. Nothing happens if it already is the key of the pool.
+     *
+     * @param publicKey the public key, or null to empty the pool
+     */
+    public void setKey(WPPublicKey publicKey) {
+        Key key = publicKey != null ? publicKey.getKey() : null;
+        Generation generation = current;
+        if (generation != null && generation.key.equals(key)) {
+            return;
+        }
+        if (generation != null) {
+            generation.queue.clear();
+        }
+        if (key == null) {
+            current = null;
+            return;
+        }
+        generation = new Generation(key, depth);
+        current = generation;
+        scheduleRefill(generation);
+    }
+
+    /**
+     * Takes an envelope for the provided key out of the pool. If the key is not the one of the pool, it
+     * becomes so.
+     *
+     * @param publicKey the public key
+     * @return an envelope that was never handed out before, or null if the pool is empty
+     */
+    public WPKeyEnvelope take(WPPublicKey publicKey) {
+        setKey(publicKey);
+        Generation generation = current;
+        //the key may have been changed again by another thread in the meantime
+        if (generation == null || publicKey == null || !generation.key.equals(publicKey.getKey())) {
+            return null;
+        }
+        WPKeyEnvelope envelope = generation.queue.poll();
+        scheduleRefill(generation);
+        return envelope;
+    }
+
+    /**
+     * Drops all the envelopes, e.g. before the public key is revoked
+     */
+    public void flush() {
+        setKey(null);
+    }
+
+    /**
+     * Returns the number of envelopes ready to be taken
+     *
+     * @return the number of envelopes
+     */
+    public int size() {
+        Generation generation = current;
+        return generation != null ? generation.queue.size() : 0;
+    }
+
+    /**
+     * Returns the maximum number of envelopes kept ready
+     *
+     * @return the depth
+     */
+    public int getDepth() {
+        return depth;
+    }
+
+    private void scheduleRefill(final Generation generation) {
+        if (generation.queue.remainingCapacity() == 0 || !generation.refilling.compareAndSet(false, true)) {
+            return;
+        }
+        Runnable refill = new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    //stops as soon as the key changes
+                    while (current == generation && generation.queue.remainingCapacity() > 0) {
+                        generation.queue.offer(WPKeyEnvelope.generate(generation.key));
+                    }
+                } catch (WPCSEException e) {
+                    //the encryptions generate their key material themselves until the next refill
+                } finally {
+                    generation.refilling.set(false);
+                }
+                if (current != generation) {
+                    generation.queue.clear();
+                } else if (generation.queue.remainingCapacity() > 0) {
+                    //an envelope was taken while this refill was finishing
+                    scheduleRefill(generation);
+                }
+            }
+        };
+        try {
+            getRefillExecutor().execute(refill);
+        } catch (RejectedExecutionException e) {
+            generation.refilling.set(false);
+        }
+    }
+
+    private Executor getRefillExecutor() {
+        return refillExecutor != null ? refillExecutor : RefillExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * The envelopes of one key
+     */
+    private static class Generation {
+
+        final Key key;
+        final BlockingQueue<WPKeyEnvelope> queue;
+        final AtomicBoolean refilling = new AtomicBoolean();
+
+        Generation(Key key, int depth) {
+            this.key = key;
+            this.queue = new ArrayBlockingQueue<>(depth);
+        }
+    }
+
+    /**
+     * Lazily created worker thread shared by the pools without their own executor
+     */
+    private static class RefillExecutorHolder {
+        static final Executor EXECUTOR = WorldpayCSE.newBoundedExecutor(1, REFILL_QUEUE_CAPACITY);
+    }
+}
@@ -0,0 +1,166 @@
+//
+//  WPKeyRing.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicReference;
+
+import com.worldpay.cse.exception.WPCSEException;
+import com.worldpay.cse.exception.WPCSEInvalidPublicKey;
+
+/**
+ * Set of public keys indexed by their key sequence number, see {@link WPPublicKey#getKeySeqNo()}, one of which
+ * is the active key used to encrypt. The per key encryption state, e.g. the JWE header, is prepared when a key
+ * is added, so switching the active key costs nothing.
+ * <p>
+ * The key ring is thread safe. Switching the active key is a single atomic reference swap, without any lock,
+ * and an encryption that has already started keeps the key it started with.
+ * </p>
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WPKeyRing keyRing = new WPKeyRing();
+ *  keyRing.add("1#10001#bf49edcaba456c...");
+ *  keyRing.add("2#10001#c2e66f18c8b369...");
+ *  keyRing.setActive("1");
+ *
+ *  WorldpayCSE worldpayCSE = new WorldpayCSE(keyRing);
+ *  //later on, from any thread
+ *  keyRing.setActive("2");
+ * </pre>
+ */
+public class WPKeyRing {
+
+    private final ConcurrentMap<String, WPKeyContext> contexts = new ConcurrentHashMap<>();
+    private final AtomicReference<WPKeyContext> active = new AtomicReference<>();
+
+    /**
+     * Adds the public key in Worldpay text format, or replaces the key with the same sequence number. The key
+     * does not become the active one, unless it replaces the active key.
+     *
+     * @param publicKey the public key in Worldpay text format
+     * @return the parsed public key
+     * @throws WPCSEInvalidPublicKey if the public key does not adhere to the Worldpay format
+     */
+    public WPPublicKey add(String publicKey) throws WPCSEInvalidPublicKey {
+        WPPublicKey result = WorldpayCSE.getPublicKeyCache().get(publicKey);
+        add(result);
+        return result;
+    }
+
+    /**
+     * Adds the public key, or replaces the key with the same sequence number. The key does not become the
+     * active one, unless it replaces the active key.
+     *
+     * @param publicKey a {@link WPPublicKey} instance with a key sequence number
+     * @throws WPCSEException if the public key has no key sequence number
+     */
+    public void add(WPPublicKey publicKey) throws WPCSEException {
+        String keySeqNo = publicKey.getKeySeqNo();
+        if (keySeqNo == null) {
+            throw new WPCSEException("Key sequence number not set");
+        }
+        WPKeyContext context = new WPKeyContext(publicKey);
+        WPKeyContext previous = contexts.put(keySeqNo, context);
+        //a replaced active key is replaced as the active one too
+        if (previous != null) {
+            active.compareAndSet(previous, context);
+        }
+    }
+
+    /**
+     * Makes the key with the provided sequence number the active one
+     *
+     * @param keySeqNo the key sequence number
+     * @throws WPCSEException if there is no such key
+     */
+    public void setActive(String keySeqNo) throws WPCSEException {
+        WPKeyContext context = keySeqNo != null ? contexts.get(keySeqNo) : null;
+        if (context == null) {
+            throw new WPCSEException("Unknown key sequence number: " + keySeqNo);
+        }
+        active.set(context);
+    }
+
+    /**
+     * Adds the public key, if it has a key sequence number, and makes it the active one
+     *
+     * @param publicKey a {@link WPPublicKey} instance, or null to leave the key ring without active key
+     */
+    public void setActiveKey(WPPublicKey publicKey) {
+        if (publicKey == null) {
+            active.set(null);
+            return;
+        }
+        String keySeqNo = publicKey.getKeySeqNo();
+        WPKeyContext context = keySeqNo != null ? contexts.get(keySeqNo) : null;
+        //the prepared state is reused when the same key is set again
+        if (context == null || context.getPublicKey() != publicKey) {
+            context = new WPKeyContext(publicKey);
+            if (keySeqNo != null) {
+                contexts.put(keySeqNo, context);
+            }
+        }
+        active.set(context);
+    }
+
+    /**
+     * Returns the active public key
+     *
+     * @return the active key, or null if there is none
+     */
+    public WPPublicKey getActiveKey() {
+        WPKeyContext context = active.get();
+        return context != null ? context.getPublicKey() : null;
+    }
+
+    /**
+     * Returns the public key with the provided sequence number
+     *
+     * @param keySeqNo the key sequence number
+     * @return the public key, or null if there is no such key
+     */
+    public WPPublicKey get(String keySeqNo) {
+        WPKeyContext context = keySeqNo != null ? contexts.get(keySeqNo) : null;
+        return context != null ? context.getPublicKey() : null;
+    }
+
+    /**
+     * Removes the public key with the provided sequence number. If it is the active key, the key ring is left
+     * without active key, unless another key has been made active in the meantime.
+     *
+     * @param keySeqNo the key sequence number
+     * @return the removed public key, or null if there was no such key
+     */
+    public WPPublicKey remove(String keySeqNo) {
+        WPKeyContext context = keySeqNo != null ? contexts.remove(keySeqNo) : null;
+        if (context == null) {
+            return null;
+        }
+        active.compareAndSet(context, null);
+        return context.getPublicKey();
+    }
+
+    /**
+     * Returns the sequence numbers of the keys of the key ring
+     *
+     * @return an unmodifiable view of the key sequence numbers
+     */
+    public Set<String> getKeySeqNos() {
+        return Collections.unmodifiableSet(contexts.keySet());
+    }
+
+    WPKeyContext getActiveContext() {
+        return active.get();
+    }
+}
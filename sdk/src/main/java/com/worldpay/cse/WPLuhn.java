@@ -0,0 +1,119 @@
+//
+//  WPLuhn.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Luhn check of card numbers packed as ASCII digits in a byte array. Eight digits are checked at once as the
+ * bytes of a <code>long</code> (SWAR, SIMD within a register): the digit range check, the doubling of every
+ * second digit and the sum of the eight lanes each take a few arithmetic operations, whatever the digits.
+ * The words are read with {@link ByteBuffer#getLong(int)}, which the runtimes compile to a single load.
+ * <p>
+ * The results are the same as the ones of {@link WPCardValidator#validateLuhn(String)}.
+ * </p>
+ */
+final class WPLuhn {
+
+    private static final Charset ISO_8859_1 = Charset.forName("ISO-8859-1");
+
+    private static final int LANES = 8;
+    private static final int BYTE_BITS = 8;
+    private static final int SUM_SHIFT = 56;
+    private static final int MAX_SINGLE_DIGIT_NUMBER = 9;
+    private static final int DIVIDER_VALUE = 10;
+
+    private static final long ONES = 0x0101010101010101L;
+    private static final long HIGH_BITS = 0x8080808080808080L;
+    private static final long ZEROS = 0x3030303030303030L;
+    //adding 0x46 sets the high bit of the bytes above '9'
+    private static final long ABOVE_NINE = 0x4646464646464646L;
+    //adding 0x7b sets the high bit of the digits from 5 to 9, whose double has two digits
+    private static final long FIVE_OR_MORE = 0x7b7b7b7b7b7b7b7bL;
+    //the lanes of the digits at even and odd indexes, the first digit being in the most significant byte
+    private static final long EVEN_LANES = 0xff00ff00ff00ff00L;
+    private static final long ODD_LANES = 0x00ff00ff00ff00ffL;
+
+    private WPLuhn() {
+    }
+
+    /**
+     * Returns whether the digits pass the Luhn check
+     *
+     * @param digits the ASCII digits
+     * @param offset the index of the first digit
+     * @param length the number of digits
+     * @return true if the digits pass the Luhn check, false if they do not or a byte is not a digit
+     */
+    static boolean isValid(byte[] digits, int offset, int length) {
+        int sum = sum(ByteBuffer.wrap(digits), offset, length);
+        return sum >= 0 && sum % DIVIDER_VALUE == 0;
+    }
+
+    /**
+     * Validates a card number the way {@link WPCardValidator#validateCardNumber(String, WPCardBrand)} does
+     *
+     * @param digits the card number bytes, read as ISO-8859-1 characters, in a big endian buffer that wraps an
+     *               array
+     * @param offset the index of the first byte
+     * @param length the number of bytes
+     * @return the error code, or 0 if the card number is valid
+     */
+    static int validateCardNumber(ByteBuffer digits, int offset, int length) {
+        WPCardBrand brand = WPCardBrandIndex.lookup(digits.array(), offset, length);
+        int sum = sum(digits, offset, length);
+        if (sum < 0) {
+            //not digits only, which is rare enough that the text can be checked the slow way
+            return WPCardValidator.validateCardNumber(new String(digits.array(), offset, length, ISO_8859_1),
+                    brand);
+        }
+        if (length == 0) {
+            return WPValidationErrorCodes.EMPTY_CARD_NUMBER;
+        }
+        if (!brand.isValidLength(length)) {
+            return WPValidationErrorCodes.INVALID_CARD_NUMBER;
+        }
+        if (sum % DIVIDER_VALUE != 0) {
+            return WPValidationErrorCodes.INVALID_CARD_NUMBER_BY_LUHN;
+        }
+        return 0;
+    }
+
+    //the Luhn sum of the digits, or -1 if a byte is not a digit
+    private static int sum(ByteBuffer digits, int offset, int length) {
+        //the rightmost digit is never doubled, so the doubled digits are the ones with the parity of length
+        long doubledLanes = (length & 1) == 0 ? EVEN_LANES : ODD_LANES;
+        int sum = 0;
+        int i = 0;
+        for (; i + LANES <= length; i += LANES) {
+            //big endian, so the first digit is in the most significant byte
+            long word = digits.getLong(offset + i);
+            if ((((word + ABOVE_NINE) | (word - ZEROS)) & HIGH_BITS) != 0) {
+                return -1;
+            }
+            long lanes = word - ZEROS;
+            //1 in the lanes of the digits from 5 to 9
+            long carries = ((lanes + FIVE_OR_MORE) & HIGH_BITS) >>> (BYTE_BITS - 1);
+            //2 * d - 9 if d >= 5, which is 1 or more, so no lane borrows from the next one
+            long doubled = (lanes << 1) - carries * MAX_SINGLE_DIGIT_NUMBER;
+            long values = (lanes & ~doubledLanes) | (doubled & doubledLanes);
+            //each lane is at most 9, so the sum of the eight lanes, at most 72, fits in the top byte
+            sum += (int) ((values * ONES) >>> SUM_SHIFT);
+        }
+        for (; i < length; i++) {
+            int digit = digits.get(offset + i) - '0';
+            if (digit < 0 || digit > MAX_SINGLE_DIGIT_NUMBER) {
+                return -1;
+            }
+            sum += ((length - i) & 1) == 0 ? WPCardValidator.doubleDigit(digit) : digit;
+        }
+        return sum;
+    }
+}
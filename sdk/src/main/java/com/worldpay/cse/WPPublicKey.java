@@ -25,7 +25,11 @@ public class WPPublicKey {
 
     private static final String EMPTY = "";
     private static final int HEXADECIMAL = 16;
+    private static final int NIBBLE_BITS = 4;
     private static final String HASH = "#";
+    private static final String RSA = "RSA";
+
+    private static final ThreadLocal<KeyFactory> KEY_FACTORIES = new ThreadLocal<>();
 
     private RSAPublicKey key = null;
     private String keySeqNo = null;
@@ -56,10 +60,9 @@ public class WPPublicKey {
             }
             String exponent = components[1];
             String modulus = components[2];
-            RSAPublicKeySpec keySpec = new RSAPublicKeySpec(new BigInteger(modulus, HEXADECIMAL), new BigInteger(exponent, HEXADECIMAL));
+            RSAPublicKeySpec keySpec = new RSAPublicKeySpec(parseHex(modulus), parseHex(exponent));
 
-            KeyFactory keyFactory = KeyFactory.getInstance("RSA");
-            RSAPublicKey key = (RSAPublicKey)keyFactory.generatePublic(keySpec);
+            RSAPublicKey key = (RSAPublicKey)getKeyFactory().generatePublic(keySpec);
             String keySeqNo = components[0];
             if (EMPTY.equals(keySeqNo)) {
                 throw new WPCSEInvalidPublicKey();
@@ -70,6 +73,40 @@ public class WPPublicKey {
         }
     }
 
+    private static KeyFactory getKeyFactory() throws NoSuchAlgorithmException {
+        KeyFactory keyFactory = KEY_FACTORIES.get();
+        if (keyFactory == null) {
+            keyFactory = KeyFactory.getInstance(RSA);
+            KEY_FACTORIES.set(keyFactory);
+        }
+        return keyFactory;
+    }
+
+    /**
+     * Parses a positive hexadecimal number into its bytes, two digits per byte, which is much faster than
+     * the digit by digit radix conversion of {@link BigInteger#BigInteger(String, int)} for a 2048 bit modulus.
+     * Anything else than hexadecimal digits, e.g. a sign, is left to that constructor, so the same values are
+     * accepted and rejected.
+     */
+    static BigInteger parseHex(String value) {
+        int length = value.length();
+        if (length == 0) {
+            return new BigInteger(value, HEXADECIMAL);
+        }
+        byte[] bytes = new byte[(length + 1) / 2];
+        //an odd number of digits starts with a single digit byte
+        int index = (length & 1) == 0 ? 0 : -1;
+        for (int i = 0; i < bytes.length; i++, index += 2) {
+            int high = index < 0 ? 0 : Character.digit(value.charAt(index), HEXADECIMAL);
+            int low = Character.digit(value.charAt(index + 1), HEXADECIMAL);
+            if (high < 0 || low < 0) {
+                return new BigInteger(value, HEXADECIMAL);
+            }
+            bytes[i] = (byte) ((high << NIBBLE_BITS) | low);
+        }
+        return new BigInteger(1, bytes);
+    }
+
     /**
      * Create a WPPublicKey object based on standard Java interface {@link RSAPublicKey} and key sequence number
      * @param key a RSAPublicKey instance
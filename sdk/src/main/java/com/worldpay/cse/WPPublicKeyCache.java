@@ -0,0 +1,137 @@
+//
+//  WPPublicKeyCache.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import com.worldpay.cse.exception.WPCSEInvalidPublicKey;
+
+/**
+ * Bounded, thread safe cache of parsed public keys, keyed by their plain Worldpay text format. When the cache
+ * is full, the least recently used key is evicted.
+ * <p>
+ * Parsing a key, see {@link WPPublicKey#parseKey(String)}, builds an RSA key out of a 2048 bit hexadecimal
+ * modulus, which is costly compared to a map lookup when the same few keys are set again and again. Invalid
+ * keys are not cached.
+ * </p>
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WPPublicKeyCache cache = new WPPublicKeyCache(500);
+ *  WPPublicKey publicKey = cache.get("1#10001#bf49edcaba456c...");
+ * </pre>
+ */
+public class WPPublicKeyCache {
+
+    private static final float LOAD_FACTOR = 0.75f;
+
+    private final int maxSize;
+    private final LinkedHashMap<String, WPPublicKey> keys;
+    private long hitCount;
+    private long missCount;
+
+    /**
+     * Creates an empty cache
+     *
+     * @param maxSize the maximum number of keys kept by the cache
+     * @throws IllegalArgumentException if <code>maxSize</code> is not positive
+     */
+    public WPPublicKeyCache(int maxSize) {
+        if (maxSize <= 0) {
+            throw new IllegalArgumentException("Invalid cache size: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        this.keys = new LinkedHashMap<String, WPPublicKey>((int) (maxSize / LOAD_FACTOR) + 1, LOAD_FACTOR, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, WPPublicKey> eldest) {
+                return size() > WPPublicKeyCache.this.maxSize;
+            }
+        };
+    }
+
+    /**
+     * Returns the parsed public key, from the cache if it is there, or else parses it and adds it to the cache
+     *
+     * @param plainKey the public key in Worldpay text format
+     * @return the parsed public key
+     * @throws WPCSEInvalidPublicKey if the public key does not adhere to the Worldpay format
+     */
+    public WPPublicKey get(String plainKey) throws WPCSEInvalidPublicKey {
+        if (plainKey == null) {
+            throw new WPCSEInvalidPublicKey();
+        }
+        synchronized (keys) {
+            WPPublicKey publicKey = keys.get(plainKey);
+            if (publicKey != null) {
+                hitCount++;
+                return publicKey;
+            }
+            missCount++;
+        }
+        //parsed out of the lock, so that a miss does not hold up the hits of other threads
+        WPPublicKey publicKey = WPPublicKey.parseKey(plainKey);
+        synchronized (keys) {
+            keys.put(plainKey, publicKey);
+        }
+        return publicKey;
+    }
+
+    /**
+     * Returns the number of {@link WPPublicKeyCache#get(String)} calls that found the key in the cache
+     *
+     * @return the hit count
+     */
+    public long getHitCount() {
+        synchronized (keys) {
+            return hitCount;
+        }
+    }
+
+    /**
+     * Returns the number of {@link WPPublicKeyCache#get(String)} calls that had to parse the key
+     *
+     * @return the miss count
+     */
+    public long getMissCount() {
+        synchronized (keys) {
+            return missCount;
+        }
+    }
+
+    /**
+     * Returns the number of keys in the cache
+     *
+     * @return the number of keys
+     */
+    public int size() {
+        synchronized (keys) {
+            return keys.size();
+        }
+    }
+
+    /**
+     * Returns the maximum number of keys kept by the cache
+     *
+     * @return the maximum number of keys
+     */
+    public int getMaxSize() {
+        return maxSize;
+    }
+
+    /**
+     * Removes all the keys from the cache. The hit and miss counts are kept.
+     */
+    public void clear() {
+        synchronized (keys) {
+            keys.clear();
+        }
+    }
+}
@@ -0,0 +1,130 @@
+//
+//  WPValidatedCardData.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import com.worldpay.cse.exception.WPCSEException;
+import com.worldpay.cse.exception.WPCSEMissingInput;
+
+/**
+ * Immutable snapshot of a {@link WPCardData} object together with the result of its validation, returned by
+ * {@link WorldpayCSE#validateForEncryption(WPCardData)}. It can drive the error messages of a form, and then be
+ * passed to {@link WorldpayCSE#encrypt(WPValidatedCardData)}, which encrypts the validated values without
+ * validating them again.
+ * <p>
+ * If any field of the source {@link WPCardData} object is changed after the validation, the snapshot is no
+ * longer current, see {@link WPValidatedCardData#isCurrent()}, and its encryption is refused. If the month has
+ * changed since the validation, the expiry date is checked again when encrypting.
+ * </p>
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WPValidatedCardData validatedCardData = WorldpayCSE.validateForEncryption(cardData);
+ *  if (validatedCardData.isValid()) {
+ *      String encryptedData = worldpayCSE.encrypt(validatedCardData);
+ *  } else {
+ *      //show validatedCardData.getValidationResult() error messages
+ *  }
+ * </pre>
+ */
+public final class WPValidatedCardData {
+
+    private final WPCardData source;
+    private final String cardNumber;
+    private final String cvc;
+    private final String expiryMonth;
+    private final String expiryYear;
+    private final String cardHolderName;
+    private final int errors;
+    private final int yearMonth;
+
+    private WPValidatedCardData(WPCardData source, WPCardValidator validator) {
+        this.source = source;
+        this.cardNumber = source.getCardNumber();
+        this.cvc = source.getCvc();
+        this.expiryMonth = source.getExpiryMonth();
+        this.expiryYear = source.getExpiryYear();
+        this.cardHolderName = source.getCardHolderName();
+        this.yearMonth = validator.getClock().getCurrentYearMonth();
+        this.errors = validator.validate(cardNumber, cvc, expiryMonth, expiryYear, cardHolderName);
+    }
+
+    /**
+     * Takes a snapshot of the card data and validates it
+     *
+     * @param cardData the card data
+     * @param validator the validator
+     * @return the validated snapshot
+     * @throws WPCSEException if the card data is null
+     */
+    static WPValidatedCardData validate(WPCardData cardData, WPCardValidator validator) throws WPCSEException {
+        if (cardData == null) {
+            throw new WPCSEMissingInput(WPCSEMissingInput.CARD_DATA_NOT_SET);
+        }
+        return new WPValidatedCardData(cardData, validator);
+    }
+
+    /**
+     * Returns the validation result of the card data
+     *
+     * @return the validation result, {@link WPValidationResult#VALID} if there is no error
+     */
+    public WPValidationResult getValidationResult() {
+        return WPValidationResult.valueOf(errors);
+    }
+
+    /**
+     * Returns whether the card data passed the validation
+     *
+     * @return true if there is no validation error
+     */
+    public boolean isValid() {
+        return errors == 0;
+    }
+
+    /**
+     * Returns whether the fields of the source {@link WPCardData} object still hold the validated values
+     *
+     * @return false if any field has been changed since the validation
+     */
+    public boolean isCurrent() {
+        return same(cardNumber, source.getCardNumber())
+                && same(cvc, source.getCvc())
+                && same(expiryMonth, source.getExpiryMonth())
+                && same(expiryYear, source.getExpiryYear())
+                && same(cardHolderName, source.getCardHolderName());
+    }
+
+    /**
+     * Returns the validation errors of the snapshot, which are only computed again if the month of the clock
+     * of <code>validator</code> is not the one of the validation
+     *
+     * @param validator the validator of the encryption
+     * @return the error mask, 0 if there is no error
+     */
+    int getErrors(WPCardValidator validator) {
+        if (validator.getClock().getCurrentYearMonth() == yearMonth) {
+            return errors;
+        }
+        return validator.validate(cardNumber, cvc, expiryMonth, expiryYear, cardHolderName);
+    }
+
+    /**
+     * Writes the validated values as the JSON payload of the encryption
+     *
+     * @return the UTF-8 encoded JSON payload
+     */
+    byte[] write() {
+        return WPCardDataWriter.write(cardNumber, cvc, expiryMonth, expiryYear, cardHolderName);
+    }
+
+    private static boolean same(String validated, String current) {
+        return validated == current || validated != null && validated.equals(current);
+    }
+}
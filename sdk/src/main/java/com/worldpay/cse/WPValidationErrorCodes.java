@@ -59,7 +59,8 @@ public class WPValidationErrorCodes {
      */
     public static final int EMPTY_CARD_NUMBER = 101;
     /**
-     * Invalid credit card number, numbers only and should be between 12 and 20 digits.
+     * Invalid credit card number, numbers only and should be between 12 and 20 digits, or of a length of its
+     * {@link WPCardBrand}.
      */
     public static final int INVALID_CARD_NUMBER = 102;
     /**
@@ -67,7 +68,8 @@ public class WPValidationErrorCodes {
      */
     public static final int INVALID_CARD_NUMBER_BY_LUHN = 103;
     /**
-     * Invalid security code, numbers only and should be between 3 and 4 digits.
+     * Invalid security code, numbers only and should be between 3 and 4 digits, or of the length of the
+     * {@link WPCardBrand} of the card number.
      */
     public static final int INVALID_CVC = 201;
     /**
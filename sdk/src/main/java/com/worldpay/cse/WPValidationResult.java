@@ -0,0 +1,193 @@
+//
+//  WPValidationResult.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Immutable result of a card data validation. The error codes, see {@link WPValidationErrorCodes}, are kept as
+ * a bit mask, so checking and iterating them does not allocate anything. There is one shared instance per mask,
+ * e.g. every valid card shares the {@link WPValidationResult#VALID} instance.
+ * <p>
+ *     Example usage:
+ * </p>
+ * <pre>
+ *  WPValidationResult result = WorldpayCSE.validateCard(cardData);
+ *  for (int i = 0; i &lt; result.size(); i++) {
+ *      int errorCode = result.getErrorCode(i);
+ *      //show error message
+ *  }
+ * </pre>
+ */
+public final class WPValidationResult {
+
+    /**
+     * The result of a card data without any validation error
+     */
+    public static final WPValidationResult VALID = new WPValidationResult(0);
+
+    //the error code of each bit of the mask, in ascending order
+    private static final int[] CODES = {
+            WPValidationErrorCodes.EMPTY_CARD_NUMBER,
+            WPValidationErrorCodes.INVALID_CARD_NUMBER,
+            WPValidationErrorCodes.INVALID_CARD_NUMBER_BY_LUHN,
+            WPValidationErrorCodes.INVALID_CVC,
+            WPValidationErrorCodes.EMPTY_EXPIRY_MONTH,
+            WPValidationErrorCodes.INVALID_EXPIRY_MONTH,
+            WPValidationErrorCodes.INVALID_EXPIRY_MONTH_OUT_RANGE,
+            WPValidationErrorCodes.EMPTY_EXPIRY_YEAR,
+            WPValidationErrorCodes.INVALID_EXPIRY_YEAR,
+            WPValidationErrorCodes.INVALID_EXPIRY_DATE,
+            WPValidationErrorCodes.EMPTY_CARD_HOLDER_NAME,
+            WPValidationErrorCodes.INVALID_CARD_HOLDER_NAME
+    };
+
+    //one shared instance per mask, created on first use; a race only creates an equal instance twice
+    private static final WPValidationResult[] RESULTS = new WPValidationResult[1 << CODES.length];
+
+    private final int mask;
+
+    private WPValidationResult(int mask) {
+        this.mask = mask;
+    }
+
+    /**
+     * Returns the result for the provided bit mask of error codes
+     *
+     * @param mask the bit mask, as returned by {@link WPValidationResult#getMask()}
+     * @return the result, {@link WPValidationResult#VALID} if <code>mask</code> is 0
+     */
+    public static WPValidationResult valueOf(int mask) {
+        if (mask == 0) {
+            return VALID;
+        }
+        if (mask < 0 || mask >= RESULTS.length) {
+            return new WPValidationResult(mask);
+        }
+        WPValidationResult result = RESULTS[mask];
+        if (result == null) {
+            result = new WPValidationResult(mask);
+            RESULTS[mask] = result;
+        }
+        return result;
+    }
+
+    /**
+     * Returns the bit that represents the error code in a mask
+     *
+     * @param errorCode one of the {@link WPValidationErrorCodes} constants
+     * @return the bit, or 0 if <code>errorCode</code> is not a known error code
+     */
+    public static int bit(int errorCode) {
+        for (int i = 0; i < CODES.length; i++) {
+            if (CODES[i] == errorCode) {
+                return 1 << i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Returns whether the bit mask contains the error code
+     *
+     * @param mask the bit mask of error codes
+     * @param errorCode one of the {@link WPValidationErrorCodes} constants
+     * @return true if the error code is set in <code>mask</code>
+     */
+    public static boolean contains(int mask, int errorCode) {
+        int bit = bit(errorCode);
+        return bit != 0 && (mask & bit) != 0;
+    }
+
+    /**
+     * Returns whether the card data is valid
+     *
+     * @return true if there is no validation error
+     */
+    public boolean isValid() {
+        return mask == 0;
+    }
+
+    /**
+     * Returns whether the validation reported the error code
+     *
+     * @param errorCode one of the {@link WPValidationErrorCodes} constants
+     * @return true if the error code was reported
+     */
+    public boolean contains(int errorCode) {
+        return contains(mask, errorCode);
+    }
+
+    /**
+     * Returns the number of error codes
+     *
+     * @return the number of error codes
+     */
+    public int size() {
+        return Integer.bitCount(mask);
+    }
+
+    /**
+     * Returns the error code at the provided index. The error codes are sorted in ascending order.
+     *
+     * @param index the index, from 0 to {@link WPValidationResult#size()} - 1
+     * @return the error code
+     * @throws IndexOutOfBoundsException if the index is out of range
+     */
+    public int getErrorCode(int index) {
+        int remaining = index;
+        for (int i = 0; i < CODES.length && index >= 0; i++) {
+            if ((mask & (1 << i)) != 0 && remaining-- == 0) {
+                return CODES[i];
+            }
+        }
+        throw new IndexOutOfBoundsException("Invalid error code index: " + index);
+    }
+
+    /**
+     * Returns the bit mask of the error codes
+     *
+     * @return the bit mask, 0 if the card data is valid
+     * @see WPValidationResult#bit(int)
+     */
+    public int getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the error codes as a new, mutable set
+     *
+     * @return the error codes
+     */
+    public Set<Integer> toSet() {
+        Set<Integer> errorCodes = new HashSet<>();
+        for (int i = 0; i < CODES.length; i++) {
+            if ((mask & (1 << i)) != 0) {
+                errorCodes.add(CODES[i]);
+            }
+        }
+        return errorCodes;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof WPValidationResult && ((WPValidationResult) o).mask == mask;
+    }
+
+    @Override
+    public int hashCode() {
+        return mask;
+    }
+
+    @Override
+    public String toString() {
+        return toSet().toString();
+    }
+}
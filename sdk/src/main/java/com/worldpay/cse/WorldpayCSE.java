@@ -9,16 +9,29 @@
 
 package com.worldpay.cse;
 
-import com.worldpay.cse.jwe.WPJWEObject;
-import com.worldpay.cse.jwe.WPJWEHeader;
-
+import java.util.Arrays;
+import java.util.List;
 import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import com.worldpay.cse.exception.WPCSEException;
 import com.worldpay.cse.exception.WPCSEInvalidCardData;
 import com.worldpay.cse.exception.WPCSEInvalidPublicKey;
+import com.worldpay.cse.exception.WPCSEMissingInput;
+import com.worldpay.cse.jwe.WPKeyEnvelope;
 
 /**
  * The main entry point class of the Worldpay CSE(Client Side Encryption) SDK.
@@ -60,13 +73,39 @@ public class WorldpayCSE {
 
     private static final Logger LOGGER = Logger.getAnonymousLogger();
 
-    private WPPublicKey publicKey;
+    private static final int KEEP_ALIVE_SECONDS = 30;
+    private static final int DEFAULT_QUEUE_CAPACITY = 64;
+    private static final int DEFAULT_KEY_CACHE_SIZE = 512;
+    private static final String WARM_UP_CARD_NUMBER = "4444333322221111";
+    private static final String WARM_UP_CVC = "123";
+    private static final String WARM_UP_CARD_HOLDER_NAME = "Warm Up";
+    private static final int JWE_PARTS = 5;
+
+    private static final WPPublicKeyCache PUBLIC_KEY_CACHE = new WPPublicKeyCache(DEFAULT_KEY_CACHE_SIZE);
+    //the validator only holds its clock, so one instance serves all the system clock validations
+    private static final WPCardValidator SYSTEM_VALIDATOR = new WPCardValidator();
+
+    private final WPKeyRing keyRing;
+    private Executor executor;
+    private WPCardValidator validator = SYSTEM_VALIDATOR;
+    private WPKeyEnvelopePool keyEnvelopePool;
 
     /**
      * Creates a WorldpayCSE object.
      */
     public WorldpayCSE() {
+        this(new WPKeyRing());
+    }
+
+    /**
+     * Creates a WorldpayCSE object that encrypts with the active key of the provided key ring. The key ring
+     * can be shared by several WorldpayCSE objects, and its active key switched while they are encrypting.
+     *
+     * @param keyRing the key ring
+     */
+    public WorldpayCSE(WPKeyRing keyRing) {
         super();
+        this.keyRing = keyRing;
     }
 
     /**
@@ -89,11 +128,24 @@ public class WorldpayCSE {
      * 3d9ee5f16521577e159d"
      * </pre>
      *
+     * The parsed key is kept in the shared cache, see {@link WorldpayCSE#getPublicKeyCache()}, so setting the
+     * same key again does not parse it again.
+     *
      * @param  publicKey the public key in Worldpay text format.
      * @throws WPCSEInvalidPublicKey if the public key does not adhere to the Worldpay format.
      */
     public void setPublicKey(String publicKey) throws WPCSEInvalidPublicKey {
-        this.publicKey = WPPublicKey.parseKey(publicKey);
+        setPublicKey(PUBLIC_KEY_CACHE.get(publicKey));
+    }
+
+    /**
+     * Returns the cache of the public keys parsed by {@link WorldpayCSE#setPublicKey(String)} and
+     * {@link WorldpayCSE#isValidPublicKey(String)}, shared by all the WorldpayCSE objects. It keeps up to 512 keys.
+     *
+     * @return the shared public key cache
+     */
+    public static WPPublicKeyCache getPublicKeyCache() {
+        return PUBLIC_KEY_CACHE;
     }
 
     /**
@@ -102,16 +154,30 @@ public class WorldpayCSE {
      * @return a {@link WPPublicKey} instance
      */
     public WPPublicKey getPublicKey() {
-        return publicKey;
+        return keyRing.getActiveKey();
     }
 
     /**
      * Sets the public(RSA) key that will be used for any future {@link WorldpayCSE#encrypt(WPCardData)} calls.
+     * The key is added to the key ring of this object and becomes its active key.
      *
      * @param  publicKey a {@link WPPublicKey} instance
      */
     public void setPublicKey(WPPublicKey publicKey) {
-        this.publicKey = publicKey;
+        keyRing.setActiveKey(publicKey);
+        WPKeyEnvelopePool pool = keyEnvelopePool;
+        if (pool != null) {
+            pool.setKey(publicKey);
+        }
+    }
+
+    /**
+     * Returns the key ring whose active key is used by this object
+     *
+     * @return the key ring
+     */
+    public WPKeyRing getKeyRing() {
+        return keyRing;
     }
 
     /**
@@ -123,9 +189,9 @@ public class WorldpayCSE {
      */
     public static boolean isValidPublicKey(String stringKey) {
         try {
-            WPPublicKey.parseKey(stringKey);
+            PUBLIC_KEY_CACHE.get(stringKey);
         } catch (WPCSEInvalidPublicKey e) {
-            LOGGER.log(Level.INFO, e.getMessage(), e);
+            LOGGER.log(Level.FINE, e.getMessage());
             return false;
         }
         return true;
@@ -141,17 +207,319 @@ public class WorldpayCSE {
      * @throws WPCSEException could be an instance of {@link WPCSEInvalidCardData} or other generic instance.
      */
     public String encrypt(WPCardData cardData) throws WPCSEException {
+        return encrypt(keyRing.getActiveContext(), validator, keyEnvelopePool, cardData);
+    }
+
+    /**
+     * Encrypts card data validated beforehand with {@link WorldpayCSE#validateForEncryption(WPCardData)}, without
+     * validating it again unless the month has changed since. The validated values are encrypted, as they were
+     * when the validation took place.
+     *
+     * @param cardData the validated card data
+     * @return The encrypted data to be submitted for processing.
+     *
+     * @throws WPCSEInvalidCardData if the card data is not valid
+     * @throws WPCSEException if the card data has been changed since it was validated, or a generic error
+     */
+    public String encrypt(WPValidatedCardData cardData) throws WPCSEException {
+        if (!cardData.isCurrent()) {
+            throw new WPCSEException("Card data changed since it was validated");
+        }
+        int errors = cardData.getErrors(validator);
+        if (errors != 0) {
+            throw new WPCSEInvalidCardData(WPValidationResult.valueOf(errors).toSet());
+        }
+        WPKeyContext context = keyRing.getActiveContext();
+        if (context == null) {
+            throw new WPCSEMissingInput(WPCSEMissingInput.PUBLIC_KEY_NOT_SET);
+        }
+        WPKeyEnvelopePool pool = keyEnvelopePool;
+        WPKeyEnvelope envelope = pool != null ? pool.take(context.getPublicKey()) : null;
+        return WPEncryptor.encrypt(context, null, envelope, cardData.write());
+    }
+
+    /**
+     * Validates and encrypts the supplied card data like {@link WorldpayCSE#encrypt(WPCardData)}, but reports
+     * the outcome in the returned result instead of throwing an exception, which is cheaper when many cards
+     * are invalid.
+     *
+     * @param cardData An object containing information about the card details to encrypt.
+     * @return the encrypted data, or else the validation errors of the card or the error that made the
+     * encryption fail, together with the sequence number of the key used
+     */
+    public WPEncryptionResult tryEncrypt(WPCardData cardData) {
+        return encryptCard(keyRing.getActiveContext(), validator, keyEnvelopePool, cardData);
+    }
+
+    /**
+     * Validates and encrypts the supplied card data on the encryption executor, and reports the outcome to
+     * <code>callback</code>, without blocking the calling thread. The public key set at the time of this call
+     * is used, even if it is changed before the encryption starts. This method is available on all Android
+     * versions; on Java 8 and Android 7.0 (API level 24) and higher,
+     * {@link WPCompletableFutures#encryptAsync(WorldpayCSE, WPCardData)} returns a future instead.
+     * <br>
+     * If the executor rejects the request, {@link WPEncryptionCallback#onError(WPCSEException)} is called
+     * on the calling thread.
+     *
+     * @param cardData An object containing information about the card details to encrypt.
+     * @param callback receives the encrypted data or the error
+     *
+     * @see WorldpayCSE#setExecutor(Executor)
+     */
+    public void encryptAsync(final WPCardData cardData, final WPEncryptionCallback callback) {
+        final WPKeyContext context = keyRing.getActiveContext();
+        final WPCardValidator cardValidator = validator;
+        final WPKeyEnvelopePool pool = keyEnvelopePool;
+        Runnable task = new Runnable() {
+            @Override
+            public void run() {
+                String encryptedData;
+                try {
+                    encryptedData = encrypt(context, cardValidator, pool, cardData);
+                } catch (WPCSEException e) {
+                    callback.onError(e);
+                    return;
+                } catch (RuntimeException e) {
+                    callback.onError(new WPCSEException(e.getMessage(), e));
+                    return;
+                }
+                callback.onSuccess(encryptedData);
+            }
+        };
+        try {
+            getExecutor().execute(task);
+        } catch (RejectedExecutionException e) {
+            callback.onError(new WPCSEException("Too many pending encryptions", e));
+        }
+    }
+
+    /**
+     * Runs a complete validation and encryption of a test card with the provided key, on the calling thread,
+     * so that the first real {@link WorldpayCSE#encrypt(WPCardData)} call does not pay for the cryptographic
+     * provider lookups, the AES-GCM backend selection, the seeding of the random generators, the class loading
+     * and the JWE header serialisation. The output of the test encryption is checked and then discarded.
+     * <br>
+     * The key becomes the key of the key envelope pool, if any, which starts filling.
+     *
+     * @param publicKey the public key that will be used by the next encryptions
+     * @throws WPCSEException if the test encryption failed, in which case the real ones would fail as well
+     *
+     * @see WorldpayCSE#warmUpAsync(WPPublicKey)
+     */
+    public void warmUp(WPPublicKey publicKey) throws WPCSEException {
+        if (publicKey == null) {
+            throw new WPCSEMissingInput(WPCSEMissingInput.PUBLIC_KEY_NOT_SET);
+        }
+        WPKeyEnvelopePool pool = keyEnvelopePool;
+        if (pool != null) {
+            pool.setKey(publicKey);
+        }
+        WPCardValidator cardValidator = validator;
+        String expiryYear = String.valueOf(cardValidator.getClock().getCurrentYearMonth() / 12 + 1);
+        WPCardData cardData = new WPCardData();
+        cardData.setCardNumber(WARM_UP_CARD_NUMBER);
+        cardData.setCvc(WARM_UP_CVC);
+        cardData.setExpiryMonth("01");
+        cardData.setExpiryYear(expiryYear);
+        cardData.setCardHolderName(WARM_UP_CARD_HOLDER_NAME);
+
+        WPKeyContext context = new WPKeyContext(publicKey);
+        String encryptedData = encrypt(context, cardValidator, null, cardData);
+        String[] parts = encryptedData.split("\\.", -1);
+        if (parts.length != JWE_PARTS || !parts[0].equals(context.getHeader().getEncoded())) {
+            throw new WPCSEException("Unexpected warm-up encryption output");
+        }
+    }
+
+    /**
+     * Runs {@link WorldpayCSE#warmUp(WPPublicKey)} on the encryption executor, which also starts its threads.
+     * Meant to be called as soon as the public key is known, e.g. when the payment screen opens.
+     *
+     * @param publicKey the public key that will be used by the next encryptions
+     * @return a future that completes when the warm-up is over, and fails with a {@link WPCSEException} if it
+     * failed or was rejected by the executor
+     */
+    public Future<Void> warmUpAsync(final WPPublicKey publicKey) {
+        FutureTask<Void> task = new FutureTask<>(new Callable<Void>() {
+            @Override
+            public Void call() throws WPCSEException {
+                warmUp(publicKey);
+                return null;
+            }
+        });
+        try {
+            getExecutor().execute(task);
+        } catch (final RejectedExecutionException e) {
+            task = new FutureTask<>(new Callable<Void>() {
+                @Override
+                public Void call() throws WPCSEException {
+                    throw new WPCSEException("Too many pending encryptions", e);
+                }
+            });
+            task.run();
+        }
+        return task;
+    }
+
+    /**
+     * Sets the executor that runs the {@link WorldpayCSE#encryptAsync(WPCardData, WPEncryptionCallback)} calls
+     * of this object. The executor should be bounded, like the ones created by
+     * {@link WorldpayCSE#newBoundedExecutor(int, int)}, so that excess requests are rejected instead of piling
+     * up. By default a shared executor with one thread per processor is used.
+     *
+     * @param executor the executor, or null to use the shared one
+     */
+    public void setExecutor(Executor executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * Returns the executor that runs the {@link WorldpayCSE#encryptAsync(WPCardData, WPEncryptionCallback)}
+     * calls of this object
+     *
+     * @return the executor
+     */
+    public Executor getExecutor() {
+        Executor result = executor;
+        return result != null ? result : ExecutorHolder.EXECUTOR;
+    }
+
+    /**
+     * Creates an executor suitable for {@link WorldpayCSE#setExecutor(Executor)}, that runs at most
+     * <code>threads</code> encryptions in parallel and queues at most <code>queueCapacity</code> more. Any request
+     * above that is rejected. The threads are daemon threads, so they do not keep the process alive.
+     *
+     * @param threads the maximum number of encryption threads
+     * @param queueCapacity the maximum number of pending encryptions
+     * @return a new executor
+     */
+    public static ExecutorService newBoundedExecutor(int threads, int queueCapacity) {
+        ThreadPoolExecutor result = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<Runnable>(queueCapacity), new ThreadFactory() {
+            private final AtomicInteger count = new AtomicInteger();
+
+            @Override
+            public Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "WorldpayCSE-" + count.incrementAndGet());
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        result.allowCoreThreadTimeOut(true);
+        return result;
+    }
+
+    /**
+     * Sets the clock that the expiry dates are checked against by the encryption calls of this object. By
+     * default the system clock is used.
+     *
+     * @param clock the clock, or null to use the system clock
+     */
+    public void setClock(WPClock clock) {
+        this.validator = clock != null ? new WPCardValidator(clock) : SYSTEM_VALIDATOR;
+    }
+
+    /**
+     * Returns the clock that the expiry dates are checked against by the encryption calls of this object
+     *
+     * @return the clock
+     */
+    public WPClock getClock() {
+        return validator.getClock();
+    }
+
+    /**
+     * Sets the pool of pre-generated key envelopes used by the {@link WorldpayCSE#encrypt(WPCardData)} and
+     * {@link WorldpayCSE#encryptAsync(WPCardData, WPEncryptionCallback)} calls of this object, which then leave
+     * the RSA encryption of the content key to the worker thread of the pool. The pool starts filling for the current public key. The
+     * batch encryptions, see {@link WorldpayCSE#encryptAll(WPCardData[], ForkJoinPool)}, do not use it.
+     *
+     * @param keyEnvelopePool the pool, or null to generate the key material on every encryption
+     */
+    public void setKeyEnvelopePool(WPKeyEnvelopePool keyEnvelopePool) {
+        this.keyEnvelopePool = keyEnvelopePool;
+        if (keyEnvelopePool != null) {
+            keyEnvelopePool.setKey(keyRing.getActiveKey());
+        }
+    }
 
-        Set<Integer> errors = new WPCardValidator().validateCardData(cardData);
-        if (errors.isEmpty()) {
-            if (publicKey != null) {
-                return performEncryption(cardData.toString());
+    /**
+     * Returns the pool of pre-generated key envelopes used by this object
+     *
+     * @return the pool, or null if there is none
+     */
+    public WPKeyEnvelopePool getKeyEnvelopePool() {
+        return keyEnvelopePool;
+    }
+
+    private static String encrypt(WPKeyContext context, WPCardValidator validator, WPKeyEnvelopePool pool,
+                                  WPCardData cardData) throws WPCSEException {
+
+        int errors = validator.validate(cardData);
+        if (errors == 0) {
+            if (context != null) {
+                WPKeyEnvelope envelope = pool != null ? pool.take(context.getPublicKey()) : null;
+                return WPEncryptor.encrypt(context, null, envelope, WPCardDataWriter.write(cardData));
             } else {
-                throw new WPCSEException("Public key not set");
+                throw new WPCSEMissingInput(WPCSEMissingInput.PUBLIC_KEY_NOT_SET);
             }
         } else {
-            throw new WPCSEInvalidCardData(errors);
+            throw new WPCSEInvalidCardData(WPValidationResult.valueOf(errors).toSet());
+        }
+    }
+
+    /**
+     * Validates and encrypts the supplied list of card data on the shared fork-join pool. Unlike
+     * {@link WorldpayCSE#encrypt(WPCardData)}, an invalid card does not abort the batch: its validation error
+     * codes, or the error that made its encryption fail, are reported in its own result.
+     * <p>
+     *     The batch runs on a {@link ForkJoinPool}, which requires Android 5.0 (API level 21) or higher. On older
+     *     versions, use {@link WorldpayCSE#encrypt(WPCardData)} or
+     *     {@link WorldpayCSE#encryptAsync(WPCardData, WPEncryptionCallback)} for each card instead.
+     * </p>
+     *
+     * @param cards the card data objects to encrypt
+     * @return one result per card, in the same order as <code>cards</code>
+     *
+     * @throws WPCSEException if the public key is not set
+     */
+    public List<WPEncryptionResult> encryptAll(List<WPCardData> cards) throws WPCSEException {
+        return Arrays.asList(encryptAll(cards.toArray(new WPCardData[cards.size()])));
+    }
+
+    /**
+     * Validates and encrypts the supplied card data on the shared fork-join pool. Requires Android 5.0 (API level
+     * 21) or higher.
+     *
+     * @param cards the card data objects to encrypt
+     * @return one result per card, in the same order as <code>cards</code>
+     *
+     * @throws WPCSEException if the public key is not set
+     * @see WorldpayCSE#encryptAll(List)
+     */
+    public WPEncryptionResult[] encryptAll(WPCardData... cards) throws WPCSEException {
+        return encryptAll(cards, BatchPoolHolder.POOL);
+    }
+
+    /**
+     * Validates and encrypts the supplied card data on the provided fork-join pool. Requires Android 5.0 (API level
+     * 21) or higher.
+     *
+     * @param cards the card data objects to encrypt
+     * @param pool the pool that runs the encryption
+     * @return one result per card, in the same order as <code>cards</code>
+     *
+     * @throws WPCSEException if the public key is not set
+     * @see WorldpayCSE#encryptAll(List)
+     */
+    public WPEncryptionResult[] encryptAll(WPCardData[] cards, ForkJoinPool pool) throws WPCSEException {
+        WPKeyContext context = keyRing.getActiveContext();
+        if (context == null) {
+            throw new WPCSEMissingInput(WPCSEMissingInput.PUBLIC_KEY_NOT_SET);
         }
+        WPEncryptionResult[] results = new WPEncryptionResult[cards.length];
+        pool.invoke(new WPBatchEncryptionTask(context, validator, cards, results));
+        return results;
     }
 
     /**
@@ -163,24 +531,202 @@ public class WorldpayCSE {
      * @see WPValidationErrorCodes
      */
     public static Set<Integer> validate(WPCardData data) {
-        return new WPCardValidator().validateCardData(data);
+        return SYSTEM_VALIDATOR.validateCardData(data);
+    }
+
+    /**
+     * Validates the payment card field values, checking the expiry date against the provided clock.
+     *
+     * @param data the {@link WPCardData} object
+     * @param clock the clock, e.g. a fixed one in tests
+     * @return the error codes
+     *
+     * @see WPValidationErrorCodes
+     */
+    public static Set<Integer> validate(WPCardData data, WPClock clock) {
+        return new WPCardValidator(clock).validateCardData(data);
+    }
+
+    /**
+     * Validates the payment card field values. Unlike {@link WorldpayCSE#validate(WPCardData)}, this method
+     * does not allocate anything for a valid card, so it is suited to validating on every keystroke.
+     *
+     * @param data the {@link WPCardData} object
+     * @return the validation result, {@link WPValidationResult#VALID} if there is no error
+     *
+     * @see WPValidationErrorCodes
+     */
+    public static WPValidationResult validateCard(WPCardData data) {
+        return WPValidationResult.valueOf(SYSTEM_VALIDATOR.validate(data));
+    }
+
+    /**
+     * Validates the payment card field values, checking the expiry date against the provided clock.
+     *
+     * @param data the {@link WPCardData} object
+     * @param clock the clock, e.g. a fixed one in tests
+     * @return the validation result, {@link WPValidationResult#VALID} if there is no error
+     *
+     * @see WPValidationErrorCodes
+     */
+    public static WPValidationResult validateCard(WPCardData data, WPClock clock) {
+        return WPValidationResult.valueOf(new WPCardValidator(clock).validate(data));
     }
 
-    private String performEncryption(String data) {
+    /**
+     * Validates the payment card field values and returns them, together with the validation result, in an
+     * immutable snapshot that {@link WorldpayCSE#encrypt(WPValidatedCardData)} encrypts without validating
+     * it again.
+     *
+     * @param data the {@link WPCardData} object
+     * @return the validated card data
+     * @throws WPCSEException if <code>data</code> is null
+     */
+    public static WPValidatedCardData validateForEncryption(WPCardData data) throws WPCSEException {
+        return WPValidatedCardData.validate(data, SYSTEM_VALIDATOR);
+    }
 
-        WPJWEHeader header = new WPJWEHeader();
-        header.setAlgorithm(RSA_1_5);
-        header.setEncryption(A_256_GCM);
-        header.setKid(publicKey.getKeySeqNo());
-        header.setApiVersion(API_VERSION);
-        header.setLibVersion(LIB_VERSION);
-        header.setChannel(CHANNEL);
+    /**
+     * Validates the payment card field values, checking the expiry date against the provided clock, and
+     * returns them together with the validation result.
+     *
+     * @param data the {@link WPCardData} object
+     * @param clock the clock, e.g. a fixed one in tests
+     * @return the validated card data
+     * @throws WPCSEException if <code>data</code> is null
+     */
+    public static WPValidatedCardData validateForEncryption(WPCardData data, WPClock clock) throws WPCSEException {
+        return WPValidatedCardData.validate(data, new WPCardValidator(clock));
+    }
 
-        WPJWEObject jweObject = new WPJWEObject(header, data);
-        jweObject.setKey(publicKey.getKey());
-        jweObject.encrypt();
-        return jweObject.serialize();
+    /**
+     * Validates a large set of card records, held as parallel arrays of field values, on the shared fork-join
+     * pool. The record at index <code>i</code> is made of <code>cardNumbers[i]</code>, <code>cvcs[i]</code>
+     * and so on; nothing is allocated per record. Requires Android 5.0 (API level 21) or higher.
+     *
+     * @param cardNumbers the card numbers
+     * @param cvcs the security codes
+     * @param expiryMonths the expiry months
+     * @param expiryYears the expiry years
+     * @param cardHolderNames the card holder names
+     * @return the bit mask of error codes of each record, see {@link WPValidationResult#valueOf(int)}
+     *
+     * @throws WPCSEException if the arrays do not have the same length
+     */
+    public static int[] validateAll(String[] cardNumbers, String[] cvcs, String[] expiryMonths,
+                                    String[] expiryYears, String[] cardHolderNames) throws WPCSEException {
+        return validateAll(cardNumbers, cvcs, expiryMonths, expiryYears, cardHolderNames,
+                WPClock.getSystemClock(), BatchPoolHolder.POOL);
+    }
+
+    /**
+     * Validates a large set of card records, held as parallel arrays of field values, on the provided
+     * fork-join pool, checking the expiry dates against the provided clock. Requires Android 5.0 (API level 21) or
+     * higher.
+     *
+     * @param cardNumbers the card numbers
+     * @param cvcs the security codes
+     * @param expiryMonths the expiry months
+     * @param expiryYears the expiry years
+     * @param cardHolderNames the card holder names
+     * @param clock the clock
+     * @param pool the pool that runs the validation
+     * @return the bit mask of error codes of each record, see {@link WPValidationResult#valueOf(int)}
+     *
+     * @throws WPCSEException if the arrays do not have the same length
+     * @see WorldpayCSE#validateAll(String[], String[], String[], String[], String[])
+     */
+    public static int[] validateAll(String[] cardNumbers, String[] cvcs, String[] expiryMonths,
+                                    String[] expiryYears, String[] cardHolderNames, WPClock clock,
+                                    ForkJoinPool pool) throws WPCSEException {
+        int size = cardNumbers.length;
+        if (cvcs.length != size || expiryMonths.length != size || expiryYears.length != size
+                || cardHolderNames.length != size) {
+            throw new WPCSEException("Card field arrays have different lengths");
+        }
+        int[] results = new int[size];
+        pool.invoke(new WPBatchValidationTask(new WPCardValidator(clock), cardNumbers, cvcs, expiryMonths,
+                expiryYears, cardHolderNames, results, 0, size));
+        return results;
+    }
 
+    /**
+     * Validates a large set of card numbers of the same length, packed one after the other as ASCII digits in
+     * a byte array, on the shared fork-join pool. The Luhn check runs on eight digits at once. Requires Android
+     * 5.0 (API level 21) or higher.
+     *
+     * @param digits the card numbers, e.g. 16 bytes per card number for <code>cardNumberLength</code> 16
+     * @param cardNumberLength the number of digits of each card number
+     * @return the bit mask of the card number error codes of each card number, see
+     * {@link WPValidationResult#valueOf(int)}
+     *
+     * @throws WPCSEException if the length of <code>digits</code> is not a multiple of
+     * <code>cardNumberLength</code>
+     */
+    public static int[] validateCardNumbers(byte[] digits, int cardNumberLength) throws WPCSEException {
+        return validateCardNumbers(digits, cardNumberLength, BatchPoolHolder.POOL);
+    }
+
+    /**
+     * Validates a large set of card numbers of the same length, packed one after the other as ASCII digits in
+     * a byte array, on the provided fork-join pool. Requires Android 5.0 (API level 21) or higher.
+     *
+     * @param digits the card numbers
+     * @param cardNumberLength the number of digits of each card number
+     * @param pool the pool that runs the validation
+     * @return the bit mask of the card number error codes of each card number
+     *
+     * @throws WPCSEException if the length of <code>digits</code> is not a multiple of
+     * <code>cardNumberLength</code>
+     * @see WorldpayCSE#validateCardNumbers(byte[], int)
+     */
+    public static int[] validateCardNumbers(byte[] digits, int cardNumberLength, ForkJoinPool pool)
+            throws WPCSEException {
+        if (cardNumberLength <= 0 || digits.length % cardNumberLength != 0) {
+            throw new WPCSEException("Invalid card number length: " + cardNumberLength);
+        }
+        int[] results = new int[digits.length / cardNumberLength];
+        pool.invoke(new WPBatchCardNumberTask(digits, cardNumberLength, results, 0, results.length));
+        return results;
+    }
+
+    static WPEncryptionResult encryptCard(WPKeyContext context, WPCardValidator validator, WPKeyEnvelopePool pool,
+                                          WPCardData cardData) {
+        String keySeqNo = context != null ? context.getPublicKey().getKeySeqNo() : null;
+        if (cardData == null) {
+            return WPEncryptionResult.failure(new WPCSEMissingInput(WPCSEMissingInput.CARD_DATA_NOT_SET), keySeqNo);
+        }
+        int errors = validator.validate(cardData);
+        if (errors != 0) {
+            return WPEncryptionResult.invalid(WPValidationResult.valueOf(errors), keySeqNo);
+        }
+        if (context == null) {
+            return WPEncryptionResult.failure(new WPCSEMissingInput(WPCSEMissingInput.PUBLIC_KEY_NOT_SET), null);
+        }
+        try {
+            WPKeyEnvelope envelope = pool != null ? pool.take(context.getPublicKey()) : null;
+            byte[] data = WPCardDataWriter.write(cardData);
+            return WPEncryptionResult.success(WPEncryptor.encrypt(context, null, envelope, data), keySeqNo);
+        } catch (WPCSEException e) {
+            return WPEncryptionResult.failure(e, keySeqNo);
+        } catch (RuntimeException e) {
+            return WPEncryptionResult.failure(new WPCSEException(e.getMessage(), e), keySeqNo);
+        }
+    }
+
+    /**
+     * Lazily created executor shared by the asynchronous encryption calls
+     */
+    private static class ExecutorHolder {
+        static final Executor EXECUTOR = newBoundedExecutor(Runtime.getRuntime().availableProcessors(),
+                DEFAULT_QUEUE_CAPACITY);
+    }
+
+    /**
+     * Lazily created pool shared by the batch encryption calls
+     */
+    private static class BatchPoolHolder {
+        static final ForkJoinPool POOL = new ForkJoinPool();
     }
 
 }
@@ -56,4 +56,15 @@ public class WPCSEInvalidCardData extends WPCSEException {
     public Set<Integer> getErrorCodes() {
         return errorCodes;
     }
+
+    /**
+     * The exception is caused by the input, not by a fault of the SDK, so its stack trace is not recorded,
+     * which makes it much cheaper to create
+     *
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
@@ -23,4 +23,15 @@ public class WPCSEInvalidPublicKey extends WPCSEException {
     public WPCSEInvalidPublicKey(Throwable cause) {
         super(INVALID_PUBLIC_KEY, cause);
     }
+
+    /**
+     * The exception is caused by the input, not by a fault of the SDK, so its stack trace is not recorded,
+     * which makes it much cheaper to create
+     *
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
 }
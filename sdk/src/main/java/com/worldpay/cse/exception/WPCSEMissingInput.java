@@ -0,0 +1,35 @@
+//
+//  WPCSEMissingInput.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.exception;
+
+/**
+ * Exception for a required input that was not provided, e.g. encrypting before setting the public key
+ */
+public class WPCSEMissingInput extends WPCSEException {
+
+    private static final long serialVersionUID = 1L;
+
+    public static final String PUBLIC_KEY_NOT_SET = "Public key not set";
+    public static final String CARD_DATA_NOT_SET = "Card data not set";
+
+    public WPCSEMissingInput(String displayMessage) {
+        super(displayMessage);
+    }
+
+    /**
+     * The exception is caused by the input, not by a fault of the SDK, so its stack trace is not recorded,
+     * which makes it much cheaper to create
+     *
+     * @return this exception
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return this;
+    }
+}
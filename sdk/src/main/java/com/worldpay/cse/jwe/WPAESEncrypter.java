@@ -9,55 +9,42 @@
 
 package com.worldpay.cse.jwe;
 
-import org.spongycastle.crypto.InvalidCipherTextException;
-import org.spongycastle.crypto.engines.AESFastEngine;
-import org.spongycastle.crypto.modes.GCMBlockCipher;
-import org.spongycastle.crypto.params.AEADParameters;
-import org.spongycastle.crypto.params.KeyParameter;
-
-import java.security.Key;
-
-import com.worldpay.cse.exception.WPCSEException;
-
 /**
- * AES256GCM encrypter. This implementation uses SpongyCastle (BouncyCastle for Android) API, because the AES256GCM standard is supported
- * only from Java 7/8 or Android 4.4+.
+ * AES256GCM encrypter. The actual AES-GCM implementation is provided by a {@link WPAESGCMBackend}, see
+ * {@link WPAESGCMBackends}.
  */
 class WPAESEncrypter implements WPEncrypter {
 
-    private Key key;
+    private WPAESGCMBackend backend;
+    private byte[] key;
     private byte[] aad;
     private byte[] iv;
 
     /**
-     * Creates an AESGCM encrypter with specified key parameters
+     * Creates an AESGCM encrypter with specified key parameters. The arrays are used as they are, without
+     * being copied, so they must not be changed while the encrypter is in use.
      *
-     * @param key the encryption key
+     * @param backend the AES-GCM implementation
+     * @param key the raw encryption key
      * @param iv the standard Initialisation Vector (IV)
      * @param aad the additional authenticated data
      *
      */
-    public WPAESEncrypter(Key key, byte[] iv, byte[] aad) {
-        this.iv = iv.clone();
+    public WPAESEncrypter(WPAESGCMBackend backend, byte[] key, byte[] iv, byte[] aad) {
+        this.backend = backend;
+        this.iv = iv;
         this.key = key;
-        this.aad = aad.clone();
+        this.aad = aad;
     }
 
+    /**
+     * Encrypts the <code>data</code>
+     *
+     * @param data the plain data as an array of bytes
+     * @return the cipher text immediately followed by the authentication tag
+     */
     @Override
     public byte[] encrypt(byte[] data) {
-        // encrypt
-        AEADParameters parameters = new AEADParameters(new KeyParameter(key.getEncoded()), WPKeyGen.AUTH_TAG_BIT_LENGTH, iv, aad);
-        GCMBlockCipher gcmEngine = new GCMBlockCipher(new AESFastEngine());
-        gcmEngine.init(true, parameters);
-
-        byte[] cipherText = new byte[gcmEngine.getOutputSize(data.length)];
-        int encLen = gcmEngine.processBytes(data, 0, data.length, cipherText, 0);
-        try {
-            gcmEngine.doFinal(cipherText, encLen);
-        } catch (InvalidCipherTextException e) {
-            throw new WPCSEException(e.getLocalizedMessage(), e);
-        }
-
-        return cipherText;
+        return backend.encrypt(key, iv, aad, data);
     }
 }
@@ -0,0 +1,38 @@
+//
+//  WPAESGCMBackend.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import com.worldpay.cse.exception.WPCSEException;
+
+/**
+ * AES-GCM implementation used for the JWE content encryption. The SDK ships a SpongyCastle and a JCA backend,
+ * see {@link WPAESGCMBackends}. Unless one is set explicitly, it uses the JCA backend if it passes a known-answer
+ * test on the current platform, and the SpongyCastle backend otherwise.
+ */
+public interface WPAESGCMBackend {
+
+    /**
+     * Returns a short name of the backend, used for diagnostics
+     *
+     * @return the backend name
+     */
+    String getName();
+
+    /**
+     * Encrypts the <code>data</code> with AES-GCM and a 128 bits authentication tag
+     *
+     * @param key the raw AES key
+     * @param iv the standard Initialisation Vector (IV)
+     * @param aad the additional authenticated data
+     * @param data the plain data
+     * @return the cipher text immediately followed by the authentication tag
+     * @throws WPCSEException if the encryption failed
+     */
+    byte[] encrypt(byte[] key, byte[] iv, byte[] aad, byte[] data) throws WPCSEException;
+}
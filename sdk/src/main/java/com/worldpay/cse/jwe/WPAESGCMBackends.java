@@ -0,0 +1,115 @@
+//
+//  WPAESGCMBackends.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import java.util.Arrays;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.spongycastle.util.encoders.Hex;
+
+/**
+ * Registry of the {@link WPAESGCMBackend} implementations.
+ * <p>
+ * Unless a backend is set with {@link WPAESGCMBackends#setDefault(WPAESGCMBackend)}, the default backend is chosen
+ * on first use and kept for the lifetime of the process: the JCA backend is preferred, as platform providers
+ * use the AES and carry-less multiplication CPU instructions, but only if it passes a known-answer test.
+ * SpongyCastle is used otherwise.
+ */
+public final class WPAESGCMBackends {
+
+    /**
+     * The SpongyCastle backend, available on every platform
+     */
+    public static final WPAESGCMBackend SPONGY_CASTLE = new WPSpongyCastleAESGCM();
+    /**
+     * The platform JCA backend, available from Java 8 and Android 4.4
+     */
+    public static final WPAESGCMBackend JCA = new WPJCAAESGCM();
+
+    private static final Logger LOGGER = Logger.getAnonymousLogger();
+
+    //NIST GCM specification, test case 16 (AES-256, 96 bits IV, with AAD)
+    private static final byte[] KAT_KEY = Hex.decode("feffe9928665731c6d6a8f9467308308feffe9928665731c6d6a8f9467308308");
+    private static final byte[] KAT_IV = Hex.decode("cafebabefacedbaddecaf888");
+    private static final byte[] KAT_AAD = Hex.decode("feedfacedeadbeeffeedfacedeadbeefabaddad2");
+    private static final byte[] KAT_PLAIN = Hex.decode("d9313225f88406e5a55909c5aff5269a86a7a9531534f7da2e4c303d"
+            + "8a318a721c3c0c95956809532fcf0e2449a6b525b16aedf5aa0de657ba637b39");
+    private static final byte[] KAT_CIPHER = Hex.decode("522dc1f099567d07f47f37a32a84427d643a8cdcbfe5c0c97598a2bd"
+            + "2555d1aa8cb08e48590dbb3da7b08b1056828838c5f61e6393ba7a0abcc9f662"
+            + "76fc6ece0f4e1768cddf8853bb2d551b");
+
+    private static volatile WPAESGCMBackend override;
+    private static volatile WPAESGCMBackend selected;
+
+    private WPAESGCMBackends() {
+    }
+
+    /**
+     * Returns the backend used by the content encryption
+     *
+     * @return the backend set with {@link WPAESGCMBackends#setDefault(WPAESGCMBackend)}, or else the automatically
+     * selected one
+     */
+    public static WPAESGCMBackend getDefault() {
+        WPAESGCMBackend result = override;
+        if (result != null) {
+            return result;
+        }
+        result = selected;
+        if (result == null) {
+            synchronized (WPAESGCMBackends.class) {
+                result = selected;
+                if (result == null) {
+                    result = select(JCA, SPONGY_CASTLE);
+                    selected = result;
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Sets the backend used by the content encryption, overriding the automatic selection
+     *
+     * @param backend the backend, or null to restore the automatic selection
+     */
+    public static void setDefault(WPAESGCMBackend backend) {
+        override = backend;
+    }
+
+    /**
+     * Runs the known-answer test against the provided backend
+     *
+     * @param backend the backend to check
+     * @return true if the backend works and produces the expected output
+     */
+    public static boolean isWorking(WPAESGCMBackend backend) {
+        try {
+            return Arrays.equals(KAT_CIPHER, backend.encrypt(KAT_KEY, KAT_IV, KAT_AAD, KAT_PLAIN));
+        } catch (RuntimeException | LinkageError e) {
+            LOGGER.log(Level.FINE, backend.getName() + " AES-GCM backend unavailable", e);
+            return false;
+        } finally {
+            WPJCAAESGCM.resetThreadCipher();
+        }
+    }
+
+    static WPAESGCMBackend select(WPAESGCMBackend... candidates) {
+        WPAESGCMBackend result = SPONGY_CASTLE;
+        for (WPAESGCMBackend candidate : candidates) {
+            if (isWorking(candidate)) {
+                result = candidate;
+                break;
+            }
+        }
+        LOGGER.log(Level.FINE, "Selected {0} AES-GCM backend", result.getName());
+        return result;
+    }
+}
@@ -0,0 +1,123 @@
+//
+//  WPBase64URL.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+/**
+ * Unpadded Base64URL encoder, as required by the JWE compact serialisation. The encoder writes straight into
+ * a caller provided buffer, so no intermediate arrays or strings are created.
+ */
+final class WPBase64URL {
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+
+    private static final int SIX_BITS = 0x3f;
+    private static final int BYTE_MASK = 0xff;
+
+    private WPBase64URL() {
+    }
+
+    /**
+     * Returns the number of characters needed to encode <code>length</code> bytes, without padding
+     *
+     * @param length the number of bytes to encode
+     * @return the number of encoded characters
+     */
+    static int encodedLength(int length) {
+        return (length / 3) * 4 + ((length % 3) * 4 + 2) / 3;
+    }
+
+    /**
+     * Encodes the provided bytes into a new string
+     *
+     * @param src the bytes to encode
+     * @return the Base64URL encoded string
+     */
+    static String encode(byte[] src) {
+        char[] dst = new char[encodedLength(src.length)];
+        encode(src, 0, src.length, dst, 0);
+        return new String(dst);
+    }
+
+    /**
+     * Encodes <code>len</code> bytes of <code>src</code>, starting at <code>off</code>, into <code>dst</code>
+     * starting at <code>dstOff</code>
+     *
+     * @param src the bytes to encode
+     * @param off the offset of the first byte to encode
+     * @param len the number of bytes to encode
+     * @param dst the destination buffer, with room for at least {@link #encodedLength(int)} characters
+     * @param dstOff the offset of the first character to write
+     * @return the number of characters written
+     */
+    static int encode(byte[] src, int off, int len, char[] dst, int dstOff) {
+        int end = off + len;
+        int full = off + (len / 3) * 3;
+        int d = dstOff;
+        int s = off;
+        while (s < full) {
+            int bits = (src[s++] & BYTE_MASK) << 16 | (src[s++] & BYTE_MASK) << 8 | (src[s++] & BYTE_MASK);
+            dst[d++] = ALPHABET[(bits >>> 18) & SIX_BITS];
+            dst[d++] = ALPHABET[(bits >>> 12) & SIX_BITS];
+            dst[d++] = ALPHABET[(bits >>> 6) & SIX_BITS];
+            dst[d++] = ALPHABET[bits & SIX_BITS];
+        }
+        if (s < end) {
+            int bits = (src[s++] & BYTE_MASK) << 16;
+            boolean two = s < end;
+            if (two) {
+                bits |= (src[s] & BYTE_MASK) << 8;
+            }
+            dst[d++] = ALPHABET[(bits >>> 18) & SIX_BITS];
+            dst[d++] = ALPHABET[(bits >>> 12) & SIX_BITS];
+            if (two) {
+                dst[d++] = ALPHABET[(bits >>> 6) & SIX_BITS];
+            }
+        }
+        return d - dstOff;
+    }
+
+    /**
+     * Encodes <code>len</code> bytes of <code>src</code>, starting at <code>off</code>, as ASCII bytes into
+     * <code>dst</code> starting at <code>dstOff</code>
+     *
+     * @param src the bytes to encode
+     * @param off the offset of the first byte to encode
+     * @param len the number of bytes to encode
+     * @param dst the destination buffer, with room for at least {@link #encodedLength(int)} bytes
+     * @param dstOff the offset of the first byte to write
+     * @return the number of bytes written
+     */
+    static int encode(byte[] src, int off, int len, byte[] dst, int dstOff) {
+        int end = off + len;
+        int full = off + (len / 3) * 3;
+        int d = dstOff;
+        int s = off;
+        while (s < full) {
+            int bits = (src[s++] & BYTE_MASK) << 16 | (src[s++] & BYTE_MASK) << 8 | (src[s++] & BYTE_MASK);
+            dst[d++] = (byte) ALPHABET[(bits >>> 18) & SIX_BITS];
+            dst[d++] = (byte) ALPHABET[(bits >>> 12) & SIX_BITS];
+            dst[d++] = (byte) ALPHABET[(bits >>> 6) & SIX_BITS];
+            dst[d++] = (byte) ALPHABET[bits & SIX_BITS];
+        }
+        if (s < end) {
+            int bits = (src[s++] & BYTE_MASK) << 16;
+            boolean two = s < end;
+            if (two) {
+                bits |= (src[s] & BYTE_MASK) << 8;
+            }
+            dst[d++] = (byte) ALPHABET[(bits >>> 18) & SIX_BITS];
+            dst[d++] = (byte) ALPHABET[(bits >>> 12) & SIX_BITS];
+            if (two) {
+                dst[d++] = (byte) ALPHABET[(bits >>> 6) & SIX_BITS];
+            }
+        }
+        return d - dstOff;
+    }
+}
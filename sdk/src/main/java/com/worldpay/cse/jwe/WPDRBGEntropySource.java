@@ -0,0 +1,155 @@
+//
+//  WPDRBGEntropySource.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import java.security.SecureRandom;
+
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.prng.EntropySource;
+import org.spongycastle.crypto.prng.drbg.HashSP800DRBG;
+import org.spongycastle.crypto.prng.drbg.SP80090DRBG;
+import org.spongycastle.util.Pack;
+
+/**
+ * Entropy source backed by one SP 800-90A Hash_DRBG (SHA-256) per thread, so that threads never contend on a
+ * shared generator lock. Each DRBG is seeded from its {@link EntropySource} and reseeded from it every
+ * <code>reseedInterval</code> requests.
+ */
+class WPDRBGEntropySource implements WPEntropySource {
+
+    static final int SECURITY_STRENGTH = 256;
+    private static final int NONCE_BIT_LENGTH = 128;
+    //maximum number of bytes per request of the SpongyCastle Hash_DRBG (2^18 bits)
+    private static final int MAX_REQUEST_LENGTH = 1 << 15;
+
+    private final String name;
+    private final EntropySource entropySource;
+    private final int reseedInterval;
+
+    private final ThreadLocal<ThreadDRBG> drbgs = new ThreadLocal<ThreadDRBG>() {
+        @Override
+        protected ThreadDRBG initialValue() {
+            return new ThreadDRBG(createDRBG());
+        }
+    };
+
+    /**
+     * Creates an entropy source whose DRBGs are seeded from the provided platform random generator
+     *
+     * @param name the name of the entropy source
+     * @param seedSource the platform random generator
+     * @param reseedInterval the number of requests between two reseeds of a DRBG
+     */
+    WPDRBGEntropySource(String name, SecureRandom seedSource, int reseedInterval) {
+        this.name = name;
+        this.entropySource = new SeedSource(seedSource);
+        this.reseedInterval = reseedInterval;
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public void nextBytes(byte[] bytes) {
+        ThreadDRBG drbg = drbgs.get();
+        if (++drbg.requests > reseedInterval) {
+            drbg.reseed();
+        }
+        generate(drbg.drbg, bytes);
+    }
+
+    /**
+     * Fills <code>bytes</code> with the output of the DRBG, in as many requests as needed
+     *
+     * @param drbg the DRBG
+     * @param bytes the array to fill
+     */
+    static void generate(SP80090DRBG drbg, byte[] bytes) {
+        byte[] output = bytes.length <= MAX_REQUEST_LENGTH ? bytes : new byte[MAX_REQUEST_LENGTH];
+        for (int offset = 0; offset < bytes.length; offset += output.length) {
+            //the DRBG asks for a reseed after 2^48 requests
+            if (drbg.generate(output, null, false) < 0) {
+                drbg.reseed(null);
+                drbg.generate(output, null, false);
+            }
+            if (output != bytes) {
+                System.arraycopy(output, 0, bytes, offset, Math.min(output.length, bytes.length - offset));
+            }
+        }
+    }
+
+    /**
+     * Creates a Hash_DRBG (SHA-256) with a 256 bits security strength
+     *
+     * @param entropySource the source of the seed material
+     * @param personalizationString the personalization string, or null
+     * @return a new DRBG
+     */
+    static SP80090DRBG createDRBG(EntropySource entropySource, byte[] personalizationString) {
+        //the nonce is drawn from the entropy source as well
+        byte[] nonce = new byte[NONCE_BIT_LENGTH / 8];
+        System.arraycopy(entropySource.getEntropy(), 0, nonce, 0, nonce.length);
+        return new HashSP800DRBG(new SHA256Digest(), SECURITY_STRENGTH, entropySource, personalizationString, nonce);
+    }
+
+    private SP80090DRBG createDRBG() {
+        //the thread tells apart the per thread DRBGs
+        return createDRBG(entropySource, Pack.longToBigEndian(Thread.currentThread().getId()));
+    }
+
+    /**
+     * A thread confined DRBG together with the number of requests since it was last seeded
+     */
+    private final class ThreadDRBG {
+
+        final SP80090DRBG drbg;
+        int requests;
+
+        ThreadDRBG(SP80090DRBG drbg) {
+            this.drbg = drbg;
+        }
+
+        void reseed() {
+            drbg.reseed(null);
+            requests = 0;
+        }
+    }
+
+    /**
+     * Entropy read from the platform random generator. Unlike {@link SecureRandom#generateSeed(int)},
+     * {@link SecureRandom#nextBytes(byte[])} does not block once the platform generator is seeded.
+     */
+    private static final class SeedSource implements EntropySource {
+
+        private final SecureRandom seedSource;
+
+        SeedSource(SecureRandom seedSource) {
+            this.seedSource = seedSource;
+        }
+
+        @Override
+        public boolean isPredictionResistant() {
+            return false;
+        }
+
+        @Override
+        public byte[] getEntropy() {
+            byte[] entropy = new byte[SECURITY_STRENGTH / 8];
+            seedSource.nextBytes(entropy);
+            return entropy;
+        }
+
+        @Override
+        public int entropySize() {
+            return SECURITY_STRENGTH;
+        }
+    }
+}
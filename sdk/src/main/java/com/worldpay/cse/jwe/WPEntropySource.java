@@ -0,0 +1,34 @@
+//
+//  WPEntropySource.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+/**
+ * Source of the random bytes of the content encryption keys and IVs. The SDK ships a per thread DRBG and a
+ * shared {@link java.security.SecureRandom} source, see {@link WPEntropySources}, and uses the DRBG unless
+ * another source is set explicitly.
+ * <p>
+ * Implementations must be thread safe.
+ * </p>
+ */
+public interface WPEntropySource {
+
+    /**
+     * Returns a short name of the entropy source, used for diagnostics
+     *
+     * @return the entropy source name
+     */
+    String getName();
+
+    /**
+     * Fills <code>bytes</code> with random bytes
+     *
+     * @param bytes the array to fill
+     */
+    void nextBytes(byte[] bytes);
+}
@@ -0,0 +1,146 @@
+//
+//  WPEntropySources.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import java.security.SecureRandom;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import org.spongycastle.crypto.digests.SHA256Digest;
+import org.spongycastle.crypto.prng.EntropySource;
+import org.spongycastle.crypto.prng.drbg.SP80090DRBG;
+import org.spongycastle.util.Pack;
+
+/**
+ * Registry of the {@link WPEntropySource} implementations.
+ * <p>
+ * Unless a source is set with {@link WPEntropySources#setDefault(WPEntropySource)}, the content encryption keys
+ * and IVs come from {@link WPEntropySources#DRBG}: one SP 800-90A Hash_DRBG per thread, seeded from the
+ * platform {@link SecureRandom} and reseeded from it every 4096 requests, so that concurrent encryptions do
+ * not contend on the lock of a single shared generator.
+ */
+public final class WPEntropySources {
+
+    private static final int RESEED_INTERVAL = 4096;
+
+    private static final Logger LOGGER = Logger.getAnonymousLogger();
+
+    /**
+     * One SP 800-90A Hash_DRBG (SHA-256) per thread, seeded from the platform random generator
+     */
+    public static final WPEntropySource DRBG = new WPDRBGEntropySource("DRBG", new SecureRandom(), RESEED_INTERVAL);
+    /**
+     * One platform random generator shared by all threads
+     */
+    public static final WPEntropySource SYSTEM = new SystemEntropySource();
+
+    private static volatile WPEntropySource override;
+
+    private WPEntropySources() {
+    }
+
+    /**
+     * Returns the entropy source of the content encryption keys and IVs
+     *
+     * @return the source set with {@link WPEntropySources#setDefault(WPEntropySource)}, or else
+     * {@link WPEntropySources#DRBG}
+     */
+    public static WPEntropySource getDefault() {
+        WPEntropySource result = override;
+        return result != null ? result : DRBG;
+    }
+
+    /**
+     * Sets the entropy source of the content encryption keys and IVs
+     *
+     * @param entropySource the source, or null to restore {@link WPEntropySources#DRBG}
+     */
+    public static void setDefault(WPEntropySource entropySource) {
+        override = entropySource;
+    }
+
+    /**
+     * Creates a deterministic entropy source, whose output only depends on <code>seed</code> and on the order
+     * of the requests, so that benchmarks and tests can be reproduced.
+     * <p>
+     * <b>For tests and benchmarks only.</b> Anybody who knows the seed can recompute every key and IV, which
+     * defeats the encryption. Never set it in production.
+     * </p>
+     *
+     * @param seed the seed
+     * @return a new deterministic entropy source
+     */
+    public static WPEntropySource deterministicForTesting(long seed) {
+        LOGGER.log(Level.WARNING, "Deterministic entropy source created, the encrypted data is not protected");
+        return new DeterministicEntropySource(seed);
+    }
+
+    /**
+     * The platform random generator shared by all threads
+     */
+    private static final class SystemEntropySource implements WPEntropySource {
+
+        private final SecureRandom random = new SecureRandom();
+
+        @Override
+        public String getName() {
+            return "System";
+        }
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            random.nextBytes(bytes);
+        }
+    }
+
+    /**
+     * A single Hash_DRBG whose entropy input is derived from a fixed seed
+     */
+    private static final class DeterministicEntropySource implements WPEntropySource {
+
+        private final SP80090DRBG drbg;
+
+        DeterministicEntropySource(final long seed) {
+            EntropySource entropySource = new EntropySource() {
+                private long counter;
+
+                @Override
+                public boolean isPredictionResistant() {
+                    return false;
+                }
+
+                @Override
+                public byte[] getEntropy() {
+                    SHA256Digest digest = new SHA256Digest();
+                    digest.update(Pack.longToBigEndian(seed), 0, 8);
+                    digest.update(Pack.longToBigEndian(counter++), 0, 8);
+                    byte[] entropy = new byte[digest.getDigestSize()];
+                    digest.doFinal(entropy, 0);
+                    return entropy;
+                }
+
+                @Override
+                public int entropySize() {
+                    return WPDRBGEntropySource.SECURITY_STRENGTH;
+                }
+            };
+            this.drbg = WPDRBGEntropySource.createDRBG(entropySource, null);
+        }
+
+        @Override
+        public String getName() {
+            return "Deterministic";
+        }
+
+        @Override
+        public synchronized void nextBytes(byte[] bytes) {
+            WPDRBGEntropySource.generate(drbg, bytes);
+        }
+    }
+}
@@ -0,0 +1,68 @@
+//
+//  WPJCAAESGCM.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import java.security.GeneralSecurityException;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.worldpay.cse.exception.WPCSEException;
+
+/**
+ * AES-GCM backend that uses the platform JCA provider (<code>AES/GCM/NoPadding</code>). On Java 8+ and
+ * Android 4.4+ the provider usually relies on the AES and carry-less multiplication CPU instructions.
+ * <p>
+ * Each thread keeps its own {@link Cipher}, which is re-initialised with the new content key and IV for
+ * every message.
+ */
+class WPJCAAESGCM implements WPAESGCMBackend {
+
+    static final String NAME = "JCA";
+
+    private static final String AES_GCM_NO_PADDING = "AES/GCM/NoPadding";
+    private static final String AES_ALGORITHM = "AES";
+
+    private static final ThreadLocal<Cipher> CIPHERS = new ThreadLocal<>();
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] key, byte[] iv, byte[] aad, byte[] data) throws WPCSEException {
+        SecretKeySpec keySpec = new SecretKeySpec(key, AES_ALGORITHM);
+        GCMParameterSpec parameterSpec = new GCMParameterSpec(WPKeyGen.AUTH_TAG_BIT_LENGTH, iv);
+        try {
+            Cipher cipher = CIPHERS.get();
+            if (cipher == null) {
+                cipher = Cipher.getInstance(AES_GCM_NO_PADDING);
+                CIPHERS.set(cipher);
+            }
+            //a provider that refuses the key and IV the cipher last used protects against nonce reuse, so the
+            //failure is reported instead of being worked around with a fresh cipher
+            cipher.init(Cipher.ENCRYPT_MODE, keySpec, parameterSpec);
+            cipher.updateAAD(aad);
+            return cipher.doFinal(data);
+        } catch (GeneralSecurityException e) {
+            CIPHERS.remove();
+            throw new WPCSEException(e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Drops the cipher of the calling thread, e.g. after a known-answer test, so that the fixed test key and
+     * IV are not remembered by the cipher used for the real messages
+     */
+    static void resetThreadCipher() {
+        CIPHERS.remove();
+    }
+}
@@ -11,12 +11,12 @@ package com.worldpay.cse.jwe;
 
 import com.worldpay.cse.exception.WPCSEException;
 
-import org.spongycastle.util.encoders.UrlBase64;
-
-import java.io.UnsupportedEncodingException;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
 import java.security.Key;
-
-import javax.crypto.spec.SecretKeySpec;
+import java.security.Provider;
 
 /**
  * The JWE Object class that does the whole JWE magic. This class encrypts the payload using AES256GCM algorithm with a random generated
@@ -25,18 +25,21 @@ import javax.crypto.spec.SecretKeySpec;
  */
 public class WPJWEObject {
 
-    private static final String ASCII = "ASCII";
-    private static final String AES_ALGORITHM = "AES";
     private static final int BYTE_LENGTH = 8;
-    private static final Character DOT = '.';
+    private static final int TAG_LENGTH = WPKeyGen.AUTH_TAG_BIT_LENGTH / BYTE_LENGTH;
+    private static final char DOT = '.';
+    private static final int SEPARATORS = 4;
+    private static final Charset UTF_8 = Charset.forName("UTF-8");
 
-    private WPJWEHeader header;
-    private String payload;
+    private WPJWEProtectedHeader header;
+    private byte[] payload;
     private byte[] encryptedKey;
-    private byte[] cipherText;
     private byte[] iv;
-    private byte[] authTag;
+    //the cipher text immediately followed by the authentication tag, as produced by AES-GCM
+    private byte[] cipher;
+    private int cipherTextLength;
     private Key key;
+    private WPAESGCMBackend backend;
 
     /**
      * Creates a JWE object based on the provided JWE header and plain payload
@@ -45,6 +48,28 @@ public class WPJWEObject {
      * @param payload a plain string payload
      */
     public WPJWEObject(WPJWEHeader header, String payload) {
+        this(new WPJWEProtectedHeader(header), payload);
+    }
+
+    /**
+     * Creates a JWE object based on an already serialised JWE header and plain payload. The same
+     * <code>header</code> can be reused by any number of JWE objects.
+     *
+     * @param header a {@link WPJWEProtectedHeader} instance, that must not be null
+     * @param payload a plain string payload, encoded as UTF-8
+     */
+    public WPJWEObject(WPJWEProtectedHeader header, String payload) {
+        this(header, payload.getBytes(UTF_8));
+    }
+
+    /**
+     * Creates a JWE object based on an already serialised JWE header and an already encoded payload.
+     * The <code>payload</code> array is used as it is, without being copied.
+     *
+     * @param header a {@link WPJWEProtectedHeader} instance, that must not be null
+     * @param payload the encoded payload
+     */
+    public WPJWEObject(WPJWEProtectedHeader header, byte[] payload) {
         this.header = header;
         this.payload = payload;
     }
@@ -58,21 +83,15 @@ public class WPJWEObject {
 
         try {
             iv = WPKeyGen.generateKey(WPKeyGen.IV_BIT_LENGTH);
-            byte[] aad = base64URLEncode(header.toString().getBytes()).getBytes(ASCII);
+            byte[] aad = header.getAAD();
             byte[] cKey = WPKeyGen.generateKey(WPKeyGen.KEY_BIT_LENGTH);
 
-            WPEncrypter cEncrypter = new WPAESEncrypter(new SecretKeySpec(cKey, AES_ALGORITHM), iv, aad);
+            WPEncrypter cEncrypter = new WPAESEncrypter(getBackend(), cKey, iv, aad);
             WPEncrypter kEncrypter = new WPRSAEncrypter(key);
 
             encryptedKey = kEncrypter.encrypt(cKey);
-            byte[] cipher = cEncrypter.encrypt(payload.getBytes());
-
-            int tagLength = WPKeyGen.AUTH_TAG_BIT_LENGTH / BYTE_LENGTH;
-            int tagPos = cipher.length - tagLength;
-            cipherText = new byte[tagPos];
-            authTag = new byte[tagLength];
-            System.arraycopy(cipher, 0, cipherText, 0, cipherText.length);
-            System.arraycopy(cipher, tagPos, authTag, 0, authTag.length);
+            cipher = cEncrypter.encrypt(payload);
+            cipherTextLength = cipher.length - TAG_LENGTH;
 
         } catch (Exception e) {
             throw new WPCSEException(e.getMessage(), e);
@@ -80,14 +99,32 @@ public class WPJWEObject {
 
     }
 
-    private String base64URLEncode(byte[] bytes) throws UnsupportedEncodingException {
-        String string = new String(UrlBase64.encode(bytes));
-        //remove padding
-        int index = string.indexOf(DOT);
-        if (index > 0) {
-            string = string.substring(0, index);
+    /**
+     * Encrypts the plain payload with pre-generated key material, so only the AES-GCM encryption is left.
+     * The envelope must have been generated for the key of this object, and it is used up by this call.
+     *
+     * @param envelope a {@link WPKeyEnvelope} that was not used yet
+     * @throws WPCSEException If the envelope does not match the key or was already used, or if encryption failed.
+     */
+    public void encrypt(WPKeyEnvelope envelope) throws WPCSEException {
+        if (!envelope.getKey().equals(key)) {
+            throw new WPCSEException("Key envelope does not match the key");
+        }
+        if (!envelope.claim()) {
+            throw new WPCSEException("Key envelope already used");
+        }
+        try {
+            WPEncrypter cEncrypter = new WPAESEncrypter(getBackend(), envelope.getContentKey(), envelope.getIV(),
+                    header.getAAD());
+
+            iv = envelope.getIV();
+            encryptedKey = envelope.getEncryptedKey();
+            cipher = cEncrypter.encrypt(payload);
+            cipherTextLength = cipher.length - TAG_LENGTH;
+
+        } catch (Exception e) {
+            throw new WPCSEException(e.getMessage(), e);
         }
-        return string;
     }
 
     /**
@@ -101,23 +138,119 @@ public class WPJWEObject {
      * @return The serialised JWE object.
      */
     public String serialize() throws WPCSEException {
+        return new String(serializeToChars());
+    }
 
-        try {
-            StringBuilder sb = new StringBuilder(base64URLEncode(header.toString().getBytes()));
-            sb.append(DOT);
-            sb.append(base64URLEncode(encryptedKey));
-            sb.append(DOT);
-            sb.append(base64URLEncode(iv));
-            sb.append(DOT);
-            sb.append(base64URLEncode(cipherText));
-            sb.append(DOT);
-            sb.append(base64URLEncode(authTag));
-
-            return sb.toString();
-        } catch (UnsupportedEncodingException e) {
-            throw new WPCSEException("Unsupported encoding exception", e);
+    /**
+     * Serialises this JWE object to its compact format, see {@link WPJWEObject#serialize()}, and appends it
+     * to <code>out</code>, without creating an intermediate string.
+     *
+     * @param out the destination of the serialised JWE object
+     * @throws IOException if <code>out</code> could not be written
+     * @throws WPCSEException if this object was not encrypted
+     */
+    public void serializeTo(Appendable out) throws IOException, WPCSEException {
+        char[] chars = serializeToChars();
+        if (out instanceof Writer) {
+            ((Writer) out).write(chars);
+        } else {
+            out.append(CharBuffer.wrap(chars));
+        }
+    }
+
+    /**
+     * Serialises this JWE object to its compact format, see {@link WPJWEObject#serialize()}, as ASCII bytes
+     * into <code>dst</code> starting at <code>off</code>.
+     *
+     * @param dst the destination buffer, with room for at least {@link WPJWEObject#getSerializedLength()} bytes
+     * @param off the offset of the first byte to write
+     * @return the number of bytes written
+     * @throws WPCSEException if this object was not encrypted or <code>dst</code> is too small
+     */
+    public int serializeTo(byte[] dst, int off) throws WPCSEException {
+        int length = getSerializedLength();
+        if (off < 0 || dst.length - off < length) {
+            throw new WPCSEException("Buffer too small for the serialised JWE object");
         }
+        byte[] encodedHeader = header.getAAD();
+        int pos = off;
+        System.arraycopy(encodedHeader, 0, dst, pos, encodedHeader.length);
+        pos += encodedHeader.length;
+        dst[pos++] = DOT;
+        pos += WPBase64URL.encode(encryptedKey, 0, encryptedKey.length, dst, pos);
+        dst[pos++] = DOT;
+        pos += WPBase64URL.encode(iv, 0, iv.length, dst, pos);
+        dst[pos++] = DOT;
+        pos += WPBase64URL.encode(cipher, 0, cipherTextLength, dst, pos);
+        dst[pos++] = DOT;
+        pos += WPBase64URL.encode(cipher, cipherTextLength, TAG_LENGTH, dst, pos);
+        return pos - off;
+    }
+
+    /**
+     * Returns the exact length of the compact serialisation of this JWE object
+     *
+     * @return the number of characters of {@link WPJWEObject#serialize()}
+     * @throws WPCSEException if this object was not encrypted
+     */
+    public int getSerializedLength() throws WPCSEException {
+        if (encryptedKey == null) {
+            throw new WPCSEException("JWE object not encrypted");
+        }
+        return header.getEncoded().length() + SEPARATORS
+                + WPBase64URL.encodedLength(encryptedKey.length)
+                + WPBase64URL.encodedLength(iv.length)
+                + WPBase64URL.encodedLength(cipherTextLength)
+                + WPBase64URL.encodedLength(TAG_LENGTH);
+    }
+
+    private char[] serializeToChars() {
+        char[] chars = new char[getSerializedLength()];
+        String encodedHeader = header.getEncoded();
+        encodedHeader.getChars(0, encodedHeader.length(), chars, 0);
+        int pos = encodedHeader.length();
+        chars[pos++] = DOT;
+        pos += WPBase64URL.encode(encryptedKey, 0, encryptedKey.length, chars, pos);
+        chars[pos++] = DOT;
+        pos += WPBase64URL.encode(iv, 0, iv.length, chars, pos);
+        chars[pos++] = DOT;
+        pos += WPBase64URL.encode(cipher, 0, cipherTextLength, chars, pos);
+        chars[pos++] = DOT;
+        WPBase64URL.encode(cipher, cipherTextLength, TAG_LENGTH, chars, pos);
+        return chars;
+    }
+
+    /**
+     * Returns the JCA provider used for the RSA1_5 key encryption. The provider is chosen once, on first
+     * use, and then reused by every encryption.
+     *
+     * @return the key encryption provider
+     * @throws WPCSEException if no provider supports RSA1_5
+     */
+    public static Provider getKeyEncryptionProvider() throws WPCSEException {
+        return WPRSAEncrypter.getProvider();
+    }
+
+    /**
+     * Returns the AES-GCM backend used for the content encryption by default, see {@link WPAESGCMBackends}
+     *
+     * @return the content encryption backend
+     */
+    public static WPAESGCMBackend getContentEncryptionBackend() {
+        return WPAESGCMBackends.getDefault();
+    }
+
+    /**
+     * Sets the AES-GCM backend used for the content encryption of this object
+     *
+     * @param backend the backend, or null to use {@link WPAESGCMBackends#getDefault()}
+     */
+    public void setBackend(WPAESGCMBackend backend) {
+        this.backend = backend;
+    }
 
+    private WPAESGCMBackend getBackend() {
+        return backend != null ? backend : WPAESGCMBackends.getDefault();
     }
 
     /**
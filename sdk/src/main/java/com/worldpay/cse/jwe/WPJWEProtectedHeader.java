@@ -0,0 +1,67 @@
+//
+//  WPJWEProtectedHeader.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import com.worldpay.cse.exception.WPCSEException;
+
+import java.io.UnsupportedEncodingException;
+
+/**
+ * Immutable, pre-serialised form of a {@link WPJWEHeader}. The header JSON, its Base64URL form and the
+ * additional authenticated data (AAD) are computed once, so the same instance can be shared by every
+ * {@link WPJWEObject} encrypted with the same key.
+ */
+public final class WPJWEProtectedHeader {
+
+    private static final String ASCII = "ASCII";
+    private static final String UTF_8 = "UTF-8";
+
+    private final String json;
+    private final String encoded;
+    private final byte[] aad;
+
+    /**
+     * Creates the protected header from the provided JWE header. Later changes to <code>header</code>
+     * are not reflected in this object.
+     *
+     * @param header a {@link WPJWEHeader} instance, that must not be null
+     * @throws WPCSEException if the header could not be encoded
+     */
+    public WPJWEProtectedHeader(WPJWEHeader header) throws WPCSEException {
+        try {
+            this.json = header.toString();
+            this.encoded = WPBase64URL.encode(json.getBytes(UTF_8));
+            this.aad = encoded.getBytes(ASCII);
+        } catch (UnsupportedEncodingException e) {
+            throw new WPCSEException("Unsupported encoding exception", e);
+        }
+    }
+
+    /**
+     * Returns the JSON representation of the header
+     *
+     * @return a JSON string
+     */
+    public String getJson() {
+        return json;
+    }
+
+    /**
+     * Returns the Base64URL encoded header, as it appears in the first segment of the compact serialisation
+     *
+     * @return the Base64URL encoded header
+     */
+    public String getEncoded() {
+        return encoded;
+    }
+
+    byte[] getAAD() {
+        return aad;
+    }
+}
@@ -0,0 +1,92 @@
+//
+//  WPKeyEnvelope.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import java.security.Key;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import com.worldpay.cse.exception.WPCSEException;
+
+/**
+ * Single use key material of one JWE object: a random content encryption key, a fresh IV and the content
+ * encryption key already encrypted with the RSA public key. Generating it ahead of time, see
+ * {@link WPKeyEnvelope#generate(Key)}, leaves only the AES-GCM encryption and the serialisation to
+ * {@link WPJWEObject#encrypt(WPKeyEnvelope)}.
+ * <p>
+ * An envelope can only be used once; reusing a content key and IV pair would break AES-GCM.
+ * </p>
+ */
+public final class WPKeyEnvelope {
+
+    private final Key key;
+    private final byte[] contentKey;
+    private final byte[] iv;
+    private final byte[] encryptedKey;
+    private final AtomicBoolean used = new AtomicBoolean();
+
+    private WPKeyEnvelope(Key key, byte[] contentKey, byte[] iv, byte[] encryptedKey) {
+        this.key = key;
+        this.contentKey = contentKey;
+        this.iv = iv;
+        this.encryptedKey = encryptedKey;
+    }
+
+    /**
+     * Generates the key material of one JWE object encrypted with the provided RSA public key
+     *
+     * @param key the RSA public key
+     * @return a new envelope
+     * @throws WPCSEException if the content key could not be encrypted
+     */
+    public static WPKeyEnvelope generate(Key key) throws WPCSEException {
+        byte[] iv = WPKeyGen.generateKey(WPKeyGen.IV_BIT_LENGTH);
+        byte[] contentKey = WPKeyGen.generateKey(WPKeyGen.KEY_BIT_LENGTH);
+        byte[] encryptedKey = new WPRSAEncrypter(key).encrypt(contentKey);
+        return new WPKeyEnvelope(key, contentKey, iv, encryptedKey);
+    }
+
+    /**
+     * Returns the RSA public key the content key is encrypted with
+     *
+     * @return the RSA public key
+     */
+    public Key getKey() {
+        return key;
+    }
+
+    /**
+     * Returns whether the envelope has already been used
+     *
+     * @return true if the envelope can no longer be used
+     */
+    public boolean isUsed() {
+        return used.get();
+    }
+
+    /**
+     * Marks the envelope as used
+     *
+     * @return true if it was not used yet, false if another caller got it first
+     */
+    boolean claim() {
+        return used.compareAndSet(false, true);
+    }
+
+    byte[] getContentKey() {
+        return contentKey;
+    }
+
+    byte[] getIV() {
+        return iv;
+    }
+
+    byte[] getEncryptedKey() {
+        return encryptedKey;
+    }
+}
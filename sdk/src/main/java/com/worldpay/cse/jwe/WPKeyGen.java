@@ -9,9 +9,6 @@
 
 package com.worldpay.cse.jwe;
 
-import java.security.SecureRandom;
-import java.util.Random;
-
 /**
  * Key generator class
  *
@@ -34,17 +31,15 @@ class WPKeyGen {
      */
     public static final int KEY_BIT_LENGTH = 256;
 
-    private static Random randomGen = new SecureRandom();
-
     /**
-     * Generate a key based on provided key size in bits
+     * Generate a key based on provided key size in bits, with the bytes of {@link WPEntropySources#getDefault()}
      *
      * @param keySize the size in bits
      * @return a byte array that represents they key
      */
     public static byte[] generateKey(int keySize) {
         byte[] bytes = new byte[keySize / 8];
-        randomGen.nextBytes(bytes);
+        WPEntropySources.getDefault().nextBytes(bytes);
         return bytes;
     }
 
@@ -9,7 +9,9 @@
 
 package com.worldpay.cse.jwe;
 
+import java.security.GeneralSecurityException;
 import java.security.Key;
+import java.security.Provider;
 
 import javax.crypto.Cipher;
 
@@ -17,11 +19,23 @@ import com.worldpay.cse.exception.WPCSEException;
 
 /**
  * The RSA1_5 encrypter used for JWE key encryption. The encrypter is initialized with just the public key or a generic(private & public) RSA key.
+ * <p>
+ * The JCA provider is resolved once per process and each thread keeps its own {@link Cipher}, which is
+ * only re-initialised when the thread switches to a different key.
  */
 class WPRSAEncrypter implements WPEncrypter {
 
     private static final String RSA_ECB_PKCS1_PADDING = "RSA/ECB/PKCS1Padding";
-    
+
+    private static final ThreadLocal<CachedCipher> CIPHERS = new ThreadLocal<CachedCipher>() {
+        @Override
+        protected CachedCipher initialValue() {
+            return new CachedCipher();
+        }
+    };
+
+    private static volatile Provider provider;
+
     private Key key;
 
     /**
@@ -35,11 +49,50 @@ class WPRSAEncrypter implements WPEncrypter {
     @Override
     public byte[] encrypt(byte[] data) {
         try {
-            Cipher cipher = Cipher.getInstance(RSA_ECB_PKCS1_PADDING);
-            cipher.init(Cipher.ENCRYPT_MODE, key);
-            return cipher.doFinal(data);
+            return CIPHERS.get().forKey(key).doFinal(data);
         } catch (Exception e) {
+            //do not reuse a cipher left in an unknown state
+            CIPHERS.remove();
             throw new WPCSEException(e.getMessage(), e);
         }
     }
+
+    /**
+     * Returns the JCA provider used for RSA key encryption, resolving it on first use
+     *
+     * @return the pinned provider
+     * @throws WPCSEException if no provider supports RSA/ECB/PKCS1Padding
+     */
+    static Provider getProvider() throws WPCSEException {
+        Provider result = provider;
+        if (result == null) {
+            try {
+                result = Cipher.getInstance(RSA_ECB_PKCS1_PADDING).getProvider();
+            } catch (GeneralSecurityException e) {
+                throw new WPCSEException(e.getMessage(), e);
+            }
+            provider = result;
+        }
+        return result;
+    }
+
+    /**
+     * A thread confined cipher together with the key it was last initialised with
+     */
+    private static class CachedCipher {
+
+        private Cipher cipher;
+        private Key key;
+
+        Cipher forKey(Key key) throws GeneralSecurityException {
+            if (cipher == null) {
+                cipher = Cipher.getInstance(RSA_ECB_PKCS1_PADDING, getProvider());
+            }
+            if (this.key != key) {
+                cipher.init(Cipher.ENCRYPT_MODE, key);
+                this.key = key;
+            }
+            return cipher;
+        }
+    }
 }
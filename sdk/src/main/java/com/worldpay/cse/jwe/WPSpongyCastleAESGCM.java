@@ -0,0 +1,59 @@
+//
+//  WPSpongyCastleAESGCM.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import org.spongycastle.crypto.InvalidCipherTextException;
+import org.spongycastle.crypto.engines.AESFastEngine;
+import org.spongycastle.crypto.modes.GCMBlockCipher;
+import org.spongycastle.crypto.params.AEADParameters;
+import org.spongycastle.crypto.params.KeyParameter;
+
+import com.worldpay.cse.exception.WPCSEException;
+
+/**
+ * AES-GCM backend that uses the SpongyCastle (BouncyCastle for Android) lightweight API. It works on every
+ * platform, including Java 7 and Android versions older than 4.4.
+ * <p>
+ * Each thread keeps its own GCM engine, which is re-initialised with the new content key and IV for every
+ * message, so the AES key schedule and GCM multiplier tables are not reallocated each time.
+ */
+class WPSpongyCastleAESGCM implements WPAESGCMBackend {
+
+    static final String NAME = "SpongyCastle";
+
+    private static final ThreadLocal<GCMBlockCipher> ENGINES = new ThreadLocal<GCMBlockCipher>() {
+        @Override
+        protected GCMBlockCipher initialValue() {
+            return new GCMBlockCipher(new AESFastEngine());
+        }
+    };
+
+    @Override
+    public String getName() {
+        return NAME;
+    }
+
+    @Override
+    public byte[] encrypt(byte[] key, byte[] iv, byte[] aad, byte[] data) throws WPCSEException {
+        AEADParameters parameters = new AEADParameters(new KeyParameter(key), WPKeyGen.AUTH_TAG_BIT_LENGTH, iv, aad);
+        GCMBlockCipher gcmEngine = ENGINES.get();
+        gcmEngine.init(true, parameters);
+
+        byte[] cipherText = new byte[gcmEngine.getOutputSize(data.length)];
+        int encLen = gcmEngine.processBytes(data, 0, data.length, cipherText, 0);
+        try {
+            gcmEngine.doFinal(cipherText, encLen);
+        } catch (InvalidCipherTextException e) {
+            ENGINES.remove();
+            throw new WPCSEException(e.getLocalizedMessage(), e);
+        }
+
+        return cipherText;
+    }
+}
@@ -0,0 +1,128 @@
+//
+//  ColdStartBenchmark.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Measures the time to the first token of a fresh JVM, with and without {@link WorldpayCSE#warmUp(WPPublicKey)}.
+ * Each run forks a new JVM, so that nothing is loaded, seeded or cached yet, and prints the medians in
+ * milliseconds of:
+ * <ul>
+ *     <li>key setup: creating the {@link WorldpayCSE} object and setting the key, the same in both modes</li>
+ *     <li>cold: the first encryption, without warm-up</li>
+ *     <li>warm-up: the {@link WorldpayCSE#warmUp(WPPublicKey)} call itself</li>
+ *     <li>warm: the first encryption after the warm-up</li>
+ * </ul>
+ * Both first encryptions are timed from the same point, once the key is set and the card data is filled in.
+ * Run it with <code>./gradlew :sdk:coldStartBenchmark</code>, optionally with the number of forks as argument.
+ */
+public class ColdStartBenchmark {
+
+    private static final int DEFAULT_FORKS = 10;
+    private static final String COLD = "cold";
+    private static final String WARM = "warm";
+
+    private static final String PUBLIC_KEY = "2#10001#bf49edcaba456c6357e4ace484c3fba212543e78bf" +
+            "72a8c2238caaa1c7ed20262956caa61d74840598d9b0707bc8" +
+            "2e66f18c8b369c77ae6be0429c93323bb7511fc73d9c7f6988" +
+            "72a8384370cd77c7516caa25a195d48701e3e0462d61200983" +
+            "ba26cc4a20bb059d5beda09270ea6dcf15dd92084c4d5867b6" +
+            "0986151717a8022e4054462ee74ab8533dda77cee227a49fda" +
+            "f58eaeb95df90cb8c05ee81f58bec95339b6262633aef216f3" +
+            "ae503e8be0650350c48859eef406e63d4399994b147e45aaa1" +
+            "4cf9936ac6fdd7d4ec5e66b527d041750ba63a8296b3e6e774" +
+            "a02ee6025c6ee66ef54c3688e4844be8951a8435e6b6e8d676" +
+            "3d9ee5f16521577e159d";
+
+    public static void main(String[] args) throws Exception {
+        if (args.length == 1 && (COLD.equals(args[0]) || WARM.equals(args[0]))) {
+            runFork(WARM.equals(args[0]));
+            return;
+        }
+        int forks = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_FORKS;
+        double[] keySetup = new double[forks * 2];
+        double[] cold = new double[forks];
+        double[] warmUp = new double[forks];
+        double[] warm = new double[forks];
+        for (int i = 0; i < forks; i++) {
+            double[] times = fork(COLD);
+            keySetup[i * 2] = times[0];
+            cold[i] = times[2];
+            times = fork(WARM);
+            keySetup[i * 2 + 1] = times[0];
+            warmUp[i] = times[1];
+            warm[i] = times[2];
+        }
+        System.out.printf("key setup:               %8.2f ms%n", median(keySetup));
+        System.out.printf("first token, cold:       %8.2f ms%n", median(cold));
+        System.out.printf("warm-up:                 %8.2f ms%n", median(warmUp));
+        System.out.printf("first token, warmed up:  %8.2f ms%n", median(warm));
+    }
+
+    /**
+     * Runs in the forked JVM, and prints the key setup, warm-up and first encryption times in nanoseconds
+     */
+    private static void runFork(boolean warm) {
+        long keySetupStart = System.nanoTime();
+        WorldpayCSE worldpayCSE = new WorldpayCSE();
+        worldpayCSE.setPublicKey(PUBLIC_KEY);
+        long keySetupTime = System.nanoTime() - keySetupStart;
+        long warmUpTime = 0;
+        if (warm) {
+            long warmUpStart = System.nanoTime();
+            worldpayCSE.warmUp(worldpayCSE.getPublicKey());
+            warmUpTime = System.nanoTime() - warmUpStart;
+        }
+        WPCardData cardData = new WPCardData();
+        cardData.setCardNumber("4444333322221111");
+        cardData.setCvc("123");
+        cardData.setExpiryMonth("12");
+        cardData.setExpiryYear(String.valueOf(WPClock.getSystemClock().getCurrentYearMonth() / 12 + 1));
+        cardData.setCardHolderName("John Smith");
+        long start = System.nanoTime();
+        worldpayCSE.encrypt(cardData);
+        System.out.println(keySetupTime + " " + warmUpTime + " " + (System.nanoTime() - start));
+    }
+
+    private static double[] fork(String mode) throws IOException, InterruptedException {
+        String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+        List<String> command = new ArrayList<>(Arrays.asList(java, "-cp", System.getProperty("java.class.path"),
+                ColdStartBenchmark.class.getName(), mode));
+        Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+        String last = null;
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(process.getInputStream(), "UTF-8"))) {
+            for (String line = reader.readLine(); line != null; line = reader.readLine()) {
+                last = line;
+            }
+        }
+        if (process.waitFor() != 0 || last == null) {
+            throw new IllegalStateException("Forked JVM failed: " + last);
+        }
+        String[] fields = last.split(" ");
+        double[] times = new double[fields.length];
+        for (int i = 0; i < fields.length; i++) {
+            times[i] = Long.parseLong(fields[i]) / 1e6;
+        }
+        return times;
+    }
+
+    private static double median(double[] values) {
+        double[] sorted = values.clone();
+        Arrays.sort(sorted);
+        int middle = sorted.length / 2;
+        return sorted.length % 2 == 1 ? sorted[middle] : (sorted[middle - 1] + sorted[middle]) / 2;
+    }
+}
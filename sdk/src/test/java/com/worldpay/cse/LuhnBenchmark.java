@@ -0,0 +1,96 @@
+//
+//  LuhnBenchmark.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse;
+
+import java.nio.charset.Charset;
+import java.util.Random;
+
+/**
+ * Compares the Luhn check of packed card numbers by {@link WPLuhn} with the per character check of
+ * {@link WPCardValidator#validateLuhn(String)} and with the original <code>Integer.parseInt</code> loop. Each
+ * round checks the same 16 digit card numbers with the three implementations, after warm-up rounds, and the
+ * best round of each is printed in nanoseconds per card number.
+ * <p>
+ * Run it with <code>./gradlew :sdk:luhnBenchmark</code>.
+ * </p>
+ */
+public class LuhnBenchmark {
+
+    private static final int CARD_NUMBERS = 1000000;
+    private static final int LENGTH = 16;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        byte[] packed = new byte[CARD_NUMBERS * LENGTH];
+        for (int i = 0; i < packed.length; i++) {
+            packed[i] = (byte) ('0' + random.nextInt(10));
+        }
+        String[] strings = new String[CARD_NUMBERS];
+        for (int i = 0; i < CARD_NUMBERS; i++) {
+            strings[i] = new String(packed, i * LENGTH, LENGTH, Charset.forName("US-ASCII"));
+        }
+        WPCardValidator validator = new WPCardValidator();
+
+        long parseInt = Long.MAX_VALUE;
+        long perChar = Long.MAX_VALUE;
+        long swar = Long.MAX_VALUE;
+        int valid = 0;
+        for (int round = 0; round < WARM_UP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (String cardNumber : strings) {
+                valid += parseIntLuhn(cardNumber) ? 1 : 0;
+            }
+            long parseIntTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (String cardNumber : strings) {
+                valid += validator.validateLuhn(cardNumber) ? 1 : 0;
+            }
+            long perCharTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int offset = 0; offset < packed.length; offset += LENGTH) {
+                valid += WPLuhn.isValid(packed, offset, LENGTH) ? 1 : 0;
+            }
+            long swarTime = System.nanoTime() - start;
+
+            if (round >= WARM_UP_ROUNDS) {
+                parseInt = Math.min(parseInt, parseIntTime);
+                perChar = Math.min(perChar, perCharTime);
+                swar = Math.min(swar, swarTime);
+            }
+        }
+        System.out.printf("Integer.parseInt loop:  %6.1f ns%n", (double) parseInt / CARD_NUMBERS);
+        System.out.printf("validateLuhn:           %6.1f ns%n", (double) perChar / CARD_NUMBERS);
+        System.out.printf("WPLuhn (SWAR):          %6.1f ns%n", (double) swar / CARD_NUMBERS);
+        System.out.println("(" + valid + " valid checks)");
+    }
+
+    /**
+     * The Luhn check as it was before the validation was rewritten
+     */
+    private static boolean parseIntLuhn(String value) {
+        int nCheck = 0;
+        boolean alternate = false;
+        for (int i = value.length() - 1; i >= 0; i--) {
+            int nDigit = Integer.parseInt(String.valueOf(value.charAt(i)));
+            if (alternate) {
+                nDigit *= 2;
+                if (nDigit > 9) {
+                    nDigit -= 9;
+                }
+            }
+            nCheck += nDigit;
+            alternate = !alternate;
+        }
+        return nCheck % 10 == 0;
+    }
+}
@@ -20,19 +20,40 @@ import junit.framework.Assert;
 import org.bouncycastle.jce.provider.BouncyCastleProvider;
 import org.junit.After;
 import org.junit.Before;
+import org.junit.BeforeClass;
 import org.junit.Test;
 
+import java.math.BigInteger;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
 import java.security.Security;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
 import java.util.Calendar;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.Set;
 
 import com.worldpay.cse.exception.WPCSEException;
+import com.worldpay.cse.jwe.WPAESGCMBackends;
+import com.worldpay.cse.jwe.WPEntropySource;
+import com.worldpay.cse.jwe.WPEntropySources;
+import com.worldpay.cse.jwe.WPJWEObject;
+import com.worldpay.cse.jwe.WPKeyEnvelope;
 import com.worldpay.cse.exception.WPCSEInvalidCardData;
 import com.worldpay.cse.exception.WPCSEInvalidPublicKey;
+import com.worldpay.cse.exception.WPCSEMissingInput;
 
 import static org.mockito.Mockito.mock;
 
@@ -42,6 +63,13 @@ import static org.mockito.Mockito.mock;
  */
 public class WorldpayCSETest {
 
+    //the expiry date of the test cards, 12/2020, is in the future at this month
+    private static final WPClock CLOCK = WPClock.fixed(2015, 7);
+
+    //generated once, as 2048 bits RSA key generation is slow
+    private static KeyPair keyPair;
+    private static KeyPair otherKeyPair;
+
     private WorldpayCSE worldpayCSE;
 
     private String validPublicKey = "2#10001#bf49edcaba456c6357e4ace484c3fba212543e78bf" +
@@ -68,6 +96,14 @@ public class WorldpayCSETest {
             "a02ee6025c6ee66ef54c3688e4844be8951a8435e6b6e8d676" +
             "3d9ee5f16521577e159d";
 
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
+        keyPairGenerator.initialize(2048);
+        keyPair = keyPairGenerator.genKeyPair();
+        otherKeyPair = keyPairGenerator.genKeyPair();
+    }
+
     @Before
     public void before() throws Exception {
         //Java 7 does not support a set of new encryption algorithms such as AES256GCM
@@ -75,6 +111,7 @@ public class WorldpayCSETest {
             Security.addProvider(new BouncyCastleProvider());
         }
         worldpayCSE = new WorldpayCSE();
+        worldpayCSE.setClock(CLOCK);
     }
 
     @After
@@ -125,16 +162,290 @@ public class WorldpayCSETest {
 
     }
 
+    @Test
+    public void testPublicKeyCache() throws Exception {
+        WPPublicKeyCache cache = new WPPublicKeyCache(2);
+        String otherPublicKey = "3" + validPublicKey.substring(1);
+        String thirdPublicKey = "4" + validPublicKey.substring(1);
+
+        WPPublicKey publicKey = cache.get(validPublicKey);
+        Assert.assertEquals(validPublicKey, publicKey.toString());
+        Assert.assertSame(publicKey, cache.get(validPublicKey));
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        //the least recently used key is evicted
+        cache.get(otherPublicKey);
+        cache.get(validPublicKey);
+        cache.get(thirdPublicKey);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertSame(publicKey, cache.get(validPublicKey));
+        Assert.assertEquals(3, cache.getHitCount());
+        cache.get(otherPublicKey);
+        Assert.assertEquals(4, cache.getMissCount());
+
+        try {
+            cache.get(invalidPublicKey);
+            Assert.fail("Expected an invalid public key error");
+        } catch (WPCSEInvalidPublicKey e) {
+            Assert.assertEquals(2, cache.size());
+        }
+
+        worldpayCSE.setPublicKey(validPublicKey);
+        Assert.assertSame(WorldpayCSE.getPublicKeyCache().get(validPublicKey), worldpayCSE.getPublicKey());
+    }
+
+    @Test
+    public void testKeyRing() throws Exception {
+        WPKeyRing keyRing = new WPKeyRing();
+        keyRing.add(new WPPublicKey((RSAPublicKey) keyPair.getPublic(), "1"));
+        keyRing.add(new WPPublicKey((RSAPublicKey) keyPair.getPublic(), "2"));
+        WorldpayCSE cse = new WorldpayCSE(keyRing);
+        cse.setClock(CLOCK);
+        Assert.assertNull(cse.getPublicKey());
+
+        keyRing.setActive("1");
+        JWEObject jweObject = JWEObject.parse(cse.encrypt(getWPCardData()));
+        Assert.assertEquals("1", jweObject.getHeader().getKeyID());
+
+        keyRing.setActive("2");
+        jweObject = JWEObject.parse(cse.encrypt(getWPCardData()));
+        Assert.assertEquals("2", jweObject.getHeader().getKeyID());
+        jweObject.decrypt(new RSADecrypter((RSAPrivateKey) keyPair.getPrivate()));
+
+        Assert.assertEquals(new HashSet<>(Arrays.asList("1", "2")), keyRing.getKeySeqNos());
+        Assert.assertSame(keyRing, cse.getKeyRing());
+        Assert.assertEquals("2", cse.getPublicKey().getKeySeqNo());
+
+        try {
+            keyRing.setActive("3");
+            Assert.fail("Expected an unknown key error");
+        } catch (WPCSEException e) {
+            Assert.assertEquals("2", keyRing.getActiveKey().getKeySeqNo());
+        }
+
+        //replacing the active key replaces it for the encryptions too
+        WPPublicKey otherKey = new WPPublicKey((RSAPublicKey) otherKeyPair.getPublic(), "2");
+        keyRing.add(otherKey);
+        Assert.assertSame(otherKey, keyRing.getActiveKey());
+        jweObject = JWEObject.parse(cse.encrypt(getWPCardData()));
+        jweObject.decrypt(new RSADecrypter((RSAPrivateKey) otherKeyPair.getPrivate()));
+        //replacing another key leaves the active one alone
+        keyRing.add(new WPPublicKey((RSAPublicKey) keyPair.getPublic(), "1"));
+        Assert.assertSame(otherKey, keyRing.getActiveKey());
+
+        Assert.assertNotNull(keyRing.remove("1"));
+        Assert.assertEquals("2", keyRing.getActiveKey().getKeySeqNo());
+        Assert.assertNotNull(keyRing.remove("2"));
+        Assert.assertNull(keyRing.getActiveKey());
+        Assert.assertNull(keyRing.get("2"));
+    }
+
+    @Test
+    public void testEncryptor() throws Exception {
+        final WPEncryptor encryptor = new WPEncryptor.Builder()
+                .setPublicKey(new WPPublicKey((RSAPublicKey) keyPair.getPublic(), "3"))
+                .setBackend(WPAESGCMBackends.SPONGY_CASTLE)
+                .setClock(CLOCK)
+                .build();
+        Assert.assertSame(WPAESGCMBackends.SPONGY_CASTLE, encryptor.getBackend());
+        Assert.assertSame(CLOCK, encryptor.getClock());
+        Assert.assertTrue(encryptor.isValidationEnabled());
+
+        //one encryptor shared by several threads
+        List<CompletableFuture<String>> futures = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(CompletableFuture.supplyAsync(new Supplier<String>() {
+                @Override
+                public String get() {
+                    return encryptor.encrypt(getWPCardData());
+                }
+            }));
+        }
+        for (CompletableFuture<String> future : futures) {
+            JWEObject jweObject = JWEObject.parse(future.get(10, TimeUnit.SECONDS));
+            jweObject.decrypt(new RSADecrypter((RSAPrivateKey) keyPair.getPrivate()));
+            Assert.assertEquals("3", jweObject.getHeader().getKeyID());
+            Assert.assertEquals(getWPCardData().getCardNumber(),
+                    WPCardData.parseJSON(jweObject.getPayload().toString()).getCardNumber());
+        }
+
+        WPCardData cardData = getWPCardData();
+        cardData.setCvc("1");
+        try {
+            encryptor.encrypt(cardData);
+            Assert.fail("Expected an invalid card data error");
+        } catch (WPCSEInvalidCardData e) {
+            Assert.assertTrue(e.getErrorCodes().contains(WPValidationErrorCodes.INVALID_CVC));
+        }
+
+        //any failure of the encryption is reported in the result
+        final IllegalStateException failure = new IllegalStateException("Pool failure");
+        WPEncryptor failingEncryptor = new WPEncryptor.Builder()
+                .setPublicKey(new WPPublicKey((RSAPublicKey) keyPair.getPublic(), "3"))
+                .setClock(CLOCK)
+                .setKeyEnvelopePool(new WPKeyEnvelopePool(1) {
+                    @Override
+                    public WPKeyEnvelope take(WPPublicKey publicKey) {
+                        throw failure;
+                    }
+                })
+                .build();
+        WPEncryptionResult result = failingEncryptor.tryEncrypt(getWPCardData());
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertEquals("3", result.getKeySeqNo());
+        Assert.assertSame(failure, result.getError().getCause());
+    }
+
+    @Test(expected = WPCSEException.class)
+    public void testEncryptorKeyNotSet() throws Exception {
+        new WPEncryptor.Builder().build();
+    }
+
+    @Test
+    public void testKeyEnvelopePool() throws Exception {
+        WPPublicKey publicKey = new WPPublicKey((RSAPublicKey) keyPair.getPublic(), "4");
+        WPPublicKey otherKey = new WPPublicKey((RSAPublicKey) otherKeyPair.getPublic(), "5");
+
+        //refilled on the calling thread, so that the pool is full right after each call
+        WPKeyEnvelopePool pool = new WPKeyEnvelopePool(3, new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                command.run();
+            }
+        });
+        pool.setKey(publicKey);
+        Assert.assertEquals(3, pool.size());
+
+        Set<WPKeyEnvelope> envelopes = new HashSet<>();
+        for (int i = 0; i < 10; i++) {
+            WPKeyEnvelope envelope = pool.take(publicKey);
+            Assert.assertFalse(envelope.isUsed());
+            Assert.assertTrue(envelopes.add(envelope));
+        }
+        Assert.assertEquals(3, pool.size());
+
+        WPKeyContext context = new WPKeyContext(publicKey);
+        WPKeyEnvelope envelope = pool.take(publicKey);
+        WPJWEObject jweObject = new WPJWEObject(context.getHeader(), "payload");
+        jweObject.setKey(publicKey.getKey());
+        jweObject.encrypt(envelope);
+        Assert.assertTrue(envelope.isUsed());
+        try {
+            jweObject.encrypt(envelope);
+            Assert.fail("Expected a reused envelope error");
+        } catch (WPCSEException e) {
+            //expected
+        }
+
+        //the envelopes of the previous key are dropped
+        envelope = pool.take(publicKey);
+        pool.setKey(otherKey);
+        Assert.assertEquals(3, pool.size());
+        Assert.assertEquals(otherKey.getKey(), pool.take(otherKey).getKey());
+        jweObject = new WPJWEObject(new WPKeyContext(otherKey).getHeader(), "payload");
+        jweObject.setKey(otherKey.getKey());
+        try {
+            jweObject.encrypt(envelope);
+            Assert.fail("Expected a key mismatch error");
+        } catch (WPCSEException e) {
+            //expected
+        }
+        pool.flush();
+        Assert.assertEquals(0, pool.size());
+        Assert.assertNull(pool.take(null));
+
+        worldpayCSE.setKeyEnvelopePool(pool);
+        worldpayCSE.setPublicKey(publicKey);
+        Assert.assertEquals(3, pool.size());
+        JWEObject parsed = JWEObject.parse(worldpayCSE.encrypt(getWPCardData()));
+        parsed.decrypt(new RSADecrypter((RSAPrivateKey) keyPair.getPrivate()));
+        Assert.assertEquals(getWPCardData().getCardNumber(),
+                WPCardData.parseJSON(parsed.getPayload().toString()).getCardNumber());
+    }
+
+    @Test
+    public void testEntropySources() throws Exception {
+        Assert.assertSame(WPEntropySources.DRBG, WPEntropySources.getDefault());
+
+        //the same seed and requests give the same bytes, including the requests split by the DRBG
+        byte[][] first = {new byte[12], new byte[32], new byte[100000]};
+        byte[][] second = {new byte[12], new byte[32], new byte[100000]};
+        WPEntropySource deterministic = WPEntropySources.deterministicForTesting(42);
+        for (byte[] bytes : first) {
+            deterministic.nextBytes(bytes);
+        }
+        deterministic = WPEntropySources.deterministicForTesting(42);
+        for (byte[] bytes : second) {
+            deterministic.nextBytes(bytes);
+        }
+        Assert.assertTrue(Arrays.deepEquals(first, second));
+        WPEntropySources.deterministicForTesting(43).nextBytes(second[0]);
+        Assert.assertFalse(Arrays.equals(first[0], second[0]));
+
+        //every thread has its own DRBG, well past the reseed interval
+        final Set<String> values = new HashSet<>();
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 4; i++) {
+            threads.add(new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int j = 0; j < 5000; j++) {
+                        byte[] bytes = new byte[16];
+                        WPEntropySources.DRBG.nextBytes(bytes);
+                        synchronized (values) {
+                            values.add(Arrays.toString(bytes));
+                        }
+                    }
+                }
+            }));
+        }
+        for (Thread thread : threads) {
+            thread.start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        Assert.assertEquals(20000, values.size());
+
+        //the encryptions draw their IVs from the default source
+        worldpayCSE.setPublicKey(validPublicKey);
+        String encryptedData;
+        try {
+            WPEntropySources.setDefault(WPEntropySources.deterministicForTesting(7));
+            encryptedData = worldpayCSE.encrypt(getWPCardData());
+        } finally {
+            WPEntropySources.setDefault(null);
+        }
+        byte[] iv = new byte[12];
+        WPEntropySources.deterministicForTesting(7).nextBytes(iv);
+        Assert.assertEquals(Base64.getUrlEncoder().withoutPadding().encodeToString(iv),
+                encryptedData.split("\\.")[2]);
+    }
+
+    @Test
+    public void testParseHex() throws Exception {
+        String[] values = {"0", "f", "10001", "bf49edcaba456c63", "00ff", "ABCdef", "+1f", "-1f"};
+        for (String value : values) {
+            Assert.assertEquals(value, new BigInteger(value, 16), WPPublicKey.parseHex(value));
+        }
+        String[] invalidValues = {"", "1g", "0x1f", "1 "};
+        for (String value : invalidValues) {
+            try {
+                WPPublicKey.parseHex(value);
+                Assert.fail("Expected a number format error for " + value);
+            } catch (NumberFormatException e) {
+                //expected
+            }
+        }
+    }
+
     /**
      * Method encrypt()
      */
     @Test
     public void testEncrypt() throws Exception {
 
-        KeyPairGenerator keyPairGenerator = KeyPairGenerator.getInstance("RSA");
-
-        keyPairGenerator.initialize(2048);
-        KeyPair keyPair = keyPairGenerator.genKeyPair();
         RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
         RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
 
@@ -169,6 +480,229 @@ public class WorldpayCSETest {
 
     }
 
+    /**
+     * Method encryptAll()
+     */
+    @Test
+    public void testEncryptAll() throws Exception {
+
+        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+
+        worldpayCSE.setPublicKey(new WPPublicKey(publicKey, "2"));
+
+        List<WPCardData> cards = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            WPCardData cardData = getWPCardData();
+            cardData.setCardHolderName("John Smith " + i);
+            if (i % 3 == 0) {
+                cardData.setCvc("1");
+            }
+            cards.add(cardData);
+        }
+
+        List<WPEncryptionResult> results = worldpayCSE.encryptAll(cards);
+
+        Assert.assertEquals(cards.size(), results.size());
+        for (int i = 0; i < cards.size(); i++) {
+            WPEncryptionResult result = results.get(i);
+            if (i % 3 == 0) {
+                Assert.assertFalse(result.isSuccess());
+                Assert.assertNull(result.getEncryptedData());
+                Assert.assertTrue(result.getErrorCodes().contains(WPValidationErrorCodes.INVALID_CVC));
+            } else {
+                Assert.assertTrue(result.isSuccess());
+                Assert.assertTrue(result.getErrorCodes().isEmpty());
+
+                JWEObject jweObject = JWEObject.parse(result.getEncryptedData());
+                jweObject.decrypt(new RSADecrypter(privateKey));
+                WPCardData cardDataRet = WPCardData.parseJSON(jweObject.getPayload().toString());
+                Assert.assertEquals(cards.get(i).getCardHolderName(), cardDataRet.getCardHolderName());
+            }
+        }
+    }
+
+    /**
+     * Method encryptAsync()
+     */
+    @Test
+    public void testEncryptAsync() throws Exception {
+
+        RSAPrivateKey privateKey = (RSAPrivateKey) keyPair.getPrivate();
+        RSAPublicKey publicKey = (RSAPublicKey) keyPair.getPublic();
+
+        worldpayCSE.setPublicKey(new WPPublicKey(publicKey, "2"));
+        worldpayCSE.setExecutor(WorldpayCSE.newBoundedExecutor(1, 1));
+
+        WPCardData cardData = getWPCardData();
+
+        String encryptedData = WPCompletableFutures.encryptAsync(worldpayCSE, cardData).get(10, TimeUnit.SECONDS);
+        JWEObject jweObject = JWEObject.parse(encryptedData);
+        jweObject.decrypt(new RSADecrypter(privateKey));
+        WPCardData cardDataRet = WPCardData.parseJSON(jweObject.getPayload().toString());
+
+        Assert.assertEquals(cardData.getCardNumber(), cardDataRet.getCardNumber());
+    }
+
+    /**
+     * Method encryptAsync()
+     */
+    @Test
+    public void testEncryptAsyncInvalid() throws Exception {
+
+        WPCardData cardData = getWPCardData();
+        cardData.setCvc("1");
+
+        try {
+            WPCompletableFutures.encryptAsync(worldpayCSE, cardData).get(10, TimeUnit.SECONDS);
+            Assert.fail("Expected an invalid card data error");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof WPCSEInvalidCardData);
+            Assert.assertTrue(((WPCSEInvalidCardData) e.getCause()).getErrorCodes().contains(WPValidationErrorCodes.INVALID_CVC));
+        }
+    }
+
+    /**
+     * Method encryptAsync()
+     */
+    @Test
+    public void testEncryptAsyncRejected() throws Exception {
+
+        worldpayCSE.setPublicKey(validPublicKey);
+        worldpayCSE.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+
+        CompletableFuture<String> future = WPCompletableFutures.encryptAsync(worldpayCSE, getWPCardData());
+
+        Assert.assertTrue(future.isCompletedExceptionally());
+    }
+
+    @Test
+    public void testTryEncrypt() throws Exception {
+        WPEncryptionResult result = worldpayCSE.tryEncrypt(getWPCardData());
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertTrue(result.getValidationResult().isValid());
+        Assert.assertNull(result.getKeySeqNo());
+        Assert.assertTrue(result.getError() instanceof WPCSEMissingInput);
+        Assert.assertEquals(0, result.getError().getStackTrace().length);
+        Assert.assertTrue(worldpayCSE.tryEncrypt(null).getError() instanceof WPCSEMissingInput);
+
+        worldpayCSE.setPublicKey(validPublicKey);
+        result = worldpayCSE.tryEncrypt(getWPCardData());
+        Assert.assertTrue(result.isSuccess());
+        Assert.assertEquals("2", result.getKeySeqNo());
+        Assert.assertEquals("2", JWEObject.parse(result.getEncryptedData()).getHeader().getKeyID());
+
+        WPCardData cardData = getWPCardData();
+        cardData.setCvc("1");
+        result = worldpayCSE.tryEncrypt(cardData);
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertNull(result.getError());
+        Assert.assertEquals("2", result.getKeySeqNo());
+        Assert.assertEquals(WPValidationResult.bit(WPValidationErrorCodes.INVALID_CVC),
+                result.getValidationResult().getMask());
+
+        //any failure of the encryption is reported in the result
+        final IllegalStateException failure = new IllegalStateException("Pool failure");
+        worldpayCSE.setKeyEnvelopePool(new WPKeyEnvelopePool(1) {
+            @Override
+            public WPKeyEnvelope take(WPPublicKey publicKey) {
+                throw failure;
+            }
+        });
+        result = worldpayCSE.tryEncrypt(getWPCardData());
+        Assert.assertFalse(result.isSuccess());
+        Assert.assertEquals("2", result.getKeySeqNo());
+        Assert.assertSame(failure, result.getError().getCause());
+        worldpayCSE.setKeyEnvelopePool(null);
+
+        //the input errors are cheap to throw
+        Assert.assertEquals(0, new WPCSEInvalidCardData(result.getErrorCodes()).getStackTrace().length);
+        Assert.assertEquals(0, new WPCSEInvalidPublicKey().getStackTrace().length);
+    }
+
+    @Test
+    public void testValidatedCardData() throws Exception {
+        worldpayCSE.setPublicKey(new WPPublicKey((RSAPublicKey) keyPair.getPublic(), "6"));
+
+        WPCardData cardData = getWPCardData();
+        WPValidatedCardData validatedCardData = WorldpayCSE.validateForEncryption(cardData, CLOCK);
+        Assert.assertTrue(validatedCardData.isValid());
+        Assert.assertTrue(validatedCardData.isCurrent());
+        //equal values are still the validated ones
+        cardData.setCvc(new String("123"));
+        Assert.assertTrue(validatedCardData.isCurrent());
+
+        JWEObject jweObject = JWEObject.parse(worldpayCSE.encrypt(validatedCardData));
+        jweObject.decrypt(new RSADecrypter((RSAPrivateKey) keyPair.getPrivate()));
+        WPCardData decrypted = WPCardData.parseJSON(jweObject.getPayload().toString());
+        Assert.assertEquals(cardData.getCardNumber(), decrypted.getCardNumber());
+        Assert.assertEquals(cardData.getCardHolderName(), decrypted.getCardHolderName());
+
+        cardData.setCardNumber("4444333322221112");
+        Assert.assertFalse(validatedCardData.isCurrent());
+        try {
+            worldpayCSE.encrypt(validatedCardData);
+            Assert.fail("Expected a changed card data error");
+        } catch (WPCSEException e) {
+            Assert.assertFalse(e instanceof WPCSEInvalidCardData);
+        }
+
+        validatedCardData = WorldpayCSE.validateForEncryption(cardData, CLOCK);
+        Assert.assertFalse(validatedCardData.isValid());
+        Assert.assertTrue(validatedCardData.getValidationResult()
+                .contains(WPValidationErrorCodes.INVALID_CARD_NUMBER_BY_LUHN));
+        try {
+            worldpayCSE.encrypt(validatedCardData);
+            Assert.fail("Expected an invalid card data error");
+        } catch (WPCSEInvalidCardData e) {
+            Assert.assertTrue(e.getErrorCodes().contains(WPValidationErrorCodes.INVALID_CARD_NUMBER_BY_LUHN));
+        }
+
+        //validated in an earlier month, so the expiry date is checked again
+        cardData = getWPCardData();
+        cardData.setExpiryMonth("03");
+        cardData.setExpiryYear("2015");
+        validatedCardData = WorldpayCSE.validateForEncryption(cardData, WPClock.fixed(2015, 1));
+        Assert.assertTrue(validatedCardData.isValid());
+        try {
+            worldpayCSE.encrypt(validatedCardData);
+            Assert.fail("Expected an expired card error");
+        } catch (WPCSEInvalidCardData e) {
+            Assert.assertTrue(e.getErrorCodes().contains(WPValidationErrorCodes.INVALID_EXPIRY_DATE));
+        }
+    }
+
+    @Test
+    public void testWarmUp() throws Exception {
+        WPPublicKey publicKey = WPPublicKey.parseKey(validPublicKey);
+        worldpayCSE.warmUp(publicKey);
+        Assert.assertNull(worldpayCSE.warmUpAsync(publicKey).get(10, TimeUnit.SECONDS));
+        try {
+            worldpayCSE.warmUp(null);
+            Assert.fail("Expected a missing public key error");
+        } catch (WPCSEException e) {
+            //expected
+        }
+
+        worldpayCSE.setExecutor(new Executor() {
+            @Override
+            public void execute(Runnable command) {
+                throw new RejectedExecutionException();
+            }
+        });
+        try {
+            worldpayCSE.warmUpAsync(publicKey).get();
+            Assert.fail("Expected a rejected warm-up");
+        } catch (ExecutionException e) {
+            Assert.assertTrue(e.getCause() instanceof WPCSEException);
+        }
+    }
+
     /**
      * Method encrypt()
      */
@@ -196,15 +730,189 @@ public class WorldpayCSETest {
         worldpayCSE.encrypt(cardData);
     }
 
+    @Test
+    public void testCardDataWriterMatchesGson() throws Exception {
+        String[] values = {null, "", "John Smith", "4444333322221111", "Jöhn Smîth", "\"quoted\" \\ back",
+                "<tag> & 'x' = y", "tab\tnew\nline\rform\fback\b", "\u0000\u0001\u001f\u007f",
+                "line\u2028para\u2029", "日本語", "emoji \ud83d\ude00", "lone \ud83d surrogate"};
+
+        for (int i = 0; i < values.length; i++) {
+            WPCardData cardData = new WPCardData();
+            cardData.setCardNumber(values[i]);
+            cardData.setCvc(values[(i + 1) % values.length]);
+            cardData.setExpiryMonth(values[(i + 2) % values.length]);
+            cardData.setExpiryYear(values[(i + 3) % values.length]);
+            cardData.setCardHolderName(values[(i + 4) % values.length]);
+
+            Assert.assertTrue(Arrays.equals(cardData.toString().getBytes("UTF-8"), WPCardDataWriter.write(cardData)));
+        }
+        Assert.assertEquals("{}", new String(WPCardDataWriter.write(new WPCardData()), "UTF-8"));
+    }
+
+    @Test
+    public void testAESGCMBackends() throws Exception {
+        Assert.assertTrue(WPAESGCMBackends.isWorking(WPAESGCMBackends.SPONGY_CASTLE));
+        Assert.assertTrue(WPAESGCMBackends.isWorking(WPAESGCMBackends.JCA));
+        //the known-answer test does not leave its key and IV behind
+        Assert.assertTrue(WPAESGCMBackends.isWorking(WPAESGCMBackends.JCA));
+        Assert.assertSame(WPAESGCMBackends.JCA, WPJWEObject.getContentEncryptionBackend());
+
+        //the provider refuses to reuse a key and IV pair, and so does the backend
+        byte[] key = new byte[32];
+        byte[] iv = new byte[12];
+        WPAESGCMBackends.JCA.encrypt(key, iv, new byte[0], new byte[]{1});
+        try {
+            WPAESGCMBackends.JCA.encrypt(key, iv, new byte[0], new byte[]{2});
+            Assert.fail("Expected a nonce reuse error");
+        } catch (WPCSEException e) {
+            //expected
+        }
+        WPAESGCMBackends.JCA.encrypt(new byte[32], new byte[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10, 11, 12}, new byte[0],
+                new byte[]{3});
+    }
+
     @Test
     public void testValidateOk() throws Exception {
         WPCardData cardData = getWPCardData();
 
-        Set<Integer> errors = worldpayCSE.validate(cardData);
+        Set<Integer> errors = WorldpayCSE.validate(cardData, CLOCK);
 
         Assert.assertEquals(0, errors.size());
     }
 
+    @Test
+    public void testCardBrand() throws Exception {
+        Assert.assertEquals(WPCardBrand.VISA, WPCardBrand.detect("4444333322221111"));
+        Assert.assertEquals(WPCardBrand.MASTERCARD, WPCardBrand.detect("5555555555554444"));
+        Assert.assertEquals(WPCardBrand.MASTERCARD, WPCardBrand.detect("2221"));
+        Assert.assertEquals(WPCardBrand.MASTERCARD, WPCardBrand.detect("2500"));
+        Assert.assertEquals(WPCardBrand.MASTERCARD, WPCardBrand.detect("2720"));
+        Assert.assertEquals(WPCardBrand.UNKNOWN, WPCardBrand.detect("2721"));
+        Assert.assertEquals(WPCardBrand.UNKNOWN, WPCardBrand.detect("2220"));
+        Assert.assertEquals(WPCardBrand.AMEX, WPCardBrand.detect("378282246310005"));
+        Assert.assertEquals(WPCardBrand.DINERS_CLUB, WPCardBrand.detect("3095"));
+        Assert.assertEquals(WPCardBrand.UNKNOWN, WPCardBrand.detect("3096"));
+        Assert.assertEquals(WPCardBrand.JCB, WPCardBrand.detect("3530111333300000"));
+        Assert.assertEquals(WPCardBrand.MAESTRO, WPCardBrand.detect("6759649826438453"));
+        Assert.assertEquals(WPCardBrand.DISCOVER, WPCardBrand.detect("6011111111111117"));
+        Assert.assertEquals(WPCardBrand.UNKNOWN, WPCardBrand.detect("3"));
+        Assert.assertEquals(WPCardBrand.UNKNOWN, WPCardBrand.detect(" 4"));
+        Assert.assertEquals(WPCardBrand.UNKNOWN, WPCardBrand.detect(null));
+
+        WPCardData cardData = getWPCardData();
+        cardData.setCardNumber("378282246310005");
+        cardData.setCvc("123");
+        WPValidationResult result = WorldpayCSE.validateCard(cardData, CLOCK);
+        Assert.assertEquals(1, result.size());
+        Assert.assertTrue(result.contains(WPValidationErrorCodes.INVALID_CVC));
+
+        cardData.setCvc("1234");
+        Assert.assertTrue(WorldpayCSE.validateCard(cardData, CLOCK).isValid());
+
+        //Luhn valid, but 17 digits are too many for a Visa card
+        cardData.setCardNumber("41111111111111113");
+        cardData.setCvc("123");
+        result = WorldpayCSE.validateCard(cardData, CLOCK);
+        Assert.assertEquals(1, result.size());
+        Assert.assertTrue(result.contains(WPValidationErrorCodes.INVALID_CARD_NUMBER));
+    }
+
+    @Test
+    public void testValidateAll() throws Exception {
+        int size = 10000;
+        String[] cardNumbers = new String[size];
+        String[] cvcs = new String[size];
+        String[] expiryMonths = new String[size];
+        String[] expiryYears = new String[size];
+        String[] cardHolderNames = new String[size];
+        for (int i = 0; i < size; i++) {
+            cardNumbers[i] = i % 5 == 0 ? "4444333322221110" : "4444333322221111";
+            cvcs[i] = i % 7 == 0 ? "1" : "123";
+            expiryMonths[i] = "12";
+            expiryYears[i] = "2020";
+            cardHolderNames[i] = i % 11 == 0 ? null : "John Smith";
+        }
+
+        int[] results = WorldpayCSE.validateAll(cardNumbers, cvcs, expiryMonths, expiryYears, cardHolderNames,
+                CLOCK, new ForkJoinPool(4));
+
+        Assert.assertEquals(size, results.length);
+        for (int i = 0; i < size; i++) {
+            WPCardData cardData = new WPCardData();
+            cardData.setCardNumber(cardNumbers[i]);
+            cardData.setCvc(cvcs[i]);
+            cardData.setExpiryMonth(expiryMonths[i]);
+            cardData.setExpiryYear(expiryYears[i]);
+            cardData.setCardHolderName(cardHolderNames[i]);
+            Assert.assertEquals(WorldpayCSE.validateCard(cardData, CLOCK).getMask(), results[i]);
+        }
+        Assert.assertEquals(0, results[1]);
+        Assert.assertTrue(WPValidationResult.contains(results[5], WPValidationErrorCodes.INVALID_CARD_NUMBER_BY_LUHN));
+    }
+
+    @Test(expected = WPCSEException.class)
+    public void testValidateAllDifferentLengths() throws Exception {
+        String[] values = new String[2];
+        WorldpayCSE.validateAll(values, values, values, values, new String[1]);
+    }
+
+    @Test
+    public void testPackedLuhn() throws Exception {
+        WPCardValidator validator = new WPCardValidator();
+        Random random = new Random(42);
+        for (int length = 0; length <= 20; length++) {
+            for (int n = 0; n < 200; n++) {
+                StringBuilder value = new StringBuilder();
+                for (int i = 0; i < length; i++) {
+                    value.append((char) ('0' + random.nextInt(10)));
+                }
+                byte[] digits = value.toString().getBytes("US-ASCII");
+                Assert.assertEquals(value.toString(), validator.validateLuhn(value.toString()),
+                        WPLuhn.isValid(digits, 0, length));
+            }
+        }
+        Assert.assertFalse(validator.validateLuhn("444433332222111;"));
+        Assert.assertFalse(validator.validateLuhn("4111-1111"));
+        Assert.assertFalse(WPLuhn.isValid("4444/33322221111".getBytes("US-ASCII"), 0, 16));
+        Assert.assertFalse(WPLuhn.isValid("44443333:2221111".getBytes("US-ASCII"), 0, 16));
+    }
+
+    @Test
+    public void testValidateCardNumbers() throws Exception {
+        String[] cardNumbers = {"4444333322221111", "4444333322221110", "4444oooo22221111", "                ",
+                "5555555555554444", "3782822463100050", "6011111111111117", "8444333322221110"};
+        StringBuilder packed = new StringBuilder();
+        for (String cardNumber : cardNumbers) {
+            packed.append(cardNumber);
+        }
+
+        int[] results = WorldpayCSE.validateCardNumbers(packed.toString().getBytes("US-ASCII"), 16);
+
+        Assert.assertEquals(cardNumbers.length, results.length);
+        for (int i = 0; i < cardNumbers.length; i++) {
+            int expected = WPCardValidator.validateCardNumber(cardNumbers[i], WPCardBrand.detect(cardNumbers[i]));
+            Assert.assertEquals(cardNumbers[i], WPValidationResult.bit(expected), results[i]);
+        }
+        Assert.assertEquals(0, results[0]);
+    }
+
+    @Test
+    public void testClock() throws Exception {
+        WPCardData cardData = getWPCardData();
+
+        Assert.assertTrue(WorldpayCSE.validateCard(cardData, WPClock.fixed(2020, 12)).isValid());
+        Assert.assertTrue(WorldpayCSE.validateCard(cardData, WPClock.fixed(2021, 1))
+                .contains(WPValidationErrorCodes.INVALID_EXPIRY_DATE));
+        Assert.assertSame(CLOCK, worldpayCSE.getClock());
+        worldpayCSE.setClock(null);
+        Assert.assertSame(WPClock.getSystemClock(), worldpayCSE.getClock());
+
+        Calendar cal = Calendar.getInstance();
+        int yearMonth = WPClock.getSystemClock().getCurrentYearMonth();
+        Assert.assertEquals(WPClock.yearMonth(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH) + 1), yearMonth);
+        Assert.assertEquals(yearMonth, WPClock.getSystemClock().getCurrentYearMonth());
+    }
+
     @Test
     public void testValidateEmptyValues() throws Exception {
         WPCardData cardData = new WPCardData();
@@ -224,6 +932,26 @@ public class WorldpayCSETest {
         Assert.assertEquals(4, errors.size());
     }
 
+    @Test
+    public void testValidateBlankValues() throws Exception {
+        WPCardData cardData = new WPCardData();
+        cardData.setCardNumber("  ");
+        cardData.setCvc("   ");
+        cardData.setExpiryMonth(" ");
+        cardData.setExpiryYear("\t");
+        cardData.setCardHolderName("    ");
+
+        Set<Integer> errors = worldpayCSE.validate(cardData);
+        //check error codes
+        Assert.assertTrue(errors.contains(WPValidationErrorCodes.EMPTY_CARD_NUMBER));
+        Assert.assertTrue(errors.contains(WPValidationErrorCodes.INVALID_CVC));
+        Assert.assertTrue(errors.contains(WPValidationErrorCodes.EMPTY_EXPIRY_MONTH));
+        Assert.assertTrue(errors.contains(WPValidationErrorCodes.EMPTY_EXPIRY_YEAR));
+        Assert.assertTrue(errors.contains(WPValidationErrorCodes.EMPTY_CARD_HOLDER_NAME));
+        //no other errors
+        Assert.assertEquals(5, errors.size());
+    }
+
     @Test
     public void testValidateShortValues() throws Exception {
         WPCardData cardData = new WPCardData();
@@ -243,6 +971,79 @@ public class WorldpayCSETest {
         Assert.assertEquals(4, errors.size());
     }
 
+    @Test
+    public void testValidateCard() throws Exception {
+        WPCardData cardData = new WPCardData();
+        cardData.setCardNumber("1234123");
+        cardData.setCvc("1");
+        cardData.setExpiryMonth("2");
+        cardData.setExpiryYear("20");
+        cardData.setCardHolderName("J");
+
+        WPValidationResult result = WorldpayCSE.validateCard(cardData);
+
+        Assert.assertFalse(result.isValid());
+        Assert.assertEquals(4, result.size());
+        Assert.assertEquals(WPValidationErrorCodes.INVALID_CARD_NUMBER, result.getErrorCode(0));
+        Assert.assertEquals(WPValidationErrorCodes.INVALID_CVC, result.getErrorCode(1));
+        Assert.assertEquals(WPValidationErrorCodes.INVALID_EXPIRY_MONTH, result.getErrorCode(2));
+        Assert.assertEquals(WPValidationErrorCodes.INVALID_EXPIRY_YEAR, result.getErrorCode(3));
+        Assert.assertFalse(result.contains(WPValidationErrorCodes.EMPTY_CARD_NUMBER));
+        Assert.assertEquals(WorldpayCSE.validate(cardData), result.toSet());
+
+        Assert.assertSame(WPValidationResult.VALID, WPValidationResult.valueOf(0));
+        Assert.assertSame(result, WPValidationResult.valueOf(result.getMask()));
+        Assert.assertSame(result, WorldpayCSE.validateCard(cardData));
+        Assert.assertTrue(WPValidationResult.VALID.isValid());
+        Assert.assertEquals(0, WPValidationResult.VALID.size());
+    }
+
+    @Test
+    public void testIncrementalValidator() throws Exception {
+        WPIncrementalValidator validator = new WPIncrementalValidator();
+        String cardNumber = "4444 3333222211114444333322221111";
+        //type the number, then delete it, checking each key stroke against the full validation
+        for (int i = 0; i < cardNumber.length(); i++) {
+            validator.getCardNumber().append(cardNumber.charAt(i));
+            String typed = cardNumber.substring(0, i + 1);
+            Assert.assertEquals(WPCardValidator.validateCardNumber(typed, WPCardBrand.detect(typed)),
+                    validator.getCardNumberError());
+        }
+        for (int i = cardNumber.length() - 1; i >= 0; i--) {
+            validator.getCardNumber().deleteLast();
+            String typed = cardNumber.substring(0, i);
+            Assert.assertEquals(WPCardValidator.validateCardNumber(typed, WPCardBrand.detect(typed)),
+                    validator.getCardNumberError());
+        }
+
+        validator.getCardNumber().setText("4444333322221111");
+        validator.getCvc().setText("123");
+        validator.getExpiryMonth().setText("12");
+        validator.getExpiryYear().setText("2199");
+        Assert.assertEquals(0, validator.validate());
+        Assert.assertEquals("4444333322221111", validator.getCardNumber().toString());
+
+        String[] values = {"", " ", "  \t", "!/x/", " !/x/ ", "!/ /", "1", "12", "13", "00", "123", "12a",
+                "2199", "21990", "1111"};
+        for (String value : values) {
+            validator.getCardNumber().setText(value);
+            validator.getCvc().setText(value);
+            validator.getExpiryMonth().setText(value);
+            validator.getExpiryYear().setText(value);
+            WPCardBrand brand = WPCardBrand.detect(value);
+            Assert.assertEquals(value, WPCardValidator.validateCardNumber(value, brand), validator.getCardNumberError());
+            Assert.assertEquals(value, WPCardValidator.validateCvc(value, brand), validator.getCvcError());
+            Assert.assertEquals(value, WPCardValidator.validateMonth(value), validator.getExpiryMonthError());
+            Assert.assertEquals(value, WPCardValidator.validateYear(value), validator.getExpiryYearError());
+        }
+
+        validator.clear();
+        Assert.assertEquals(WPValidationResult.bit(WPValidationErrorCodes.EMPTY_CARD_NUMBER)
+                        | WPValidationResult.bit(WPValidationErrorCodes.EMPTY_EXPIRY_MONTH)
+                        | WPValidationResult.bit(WPValidationErrorCodes.EMPTY_EXPIRY_YEAR),
+                validator.validate());
+    }
+
     @Test
     public void testValidateLongValues() throws Exception {
         WPCardData cardData = new WPCardData();
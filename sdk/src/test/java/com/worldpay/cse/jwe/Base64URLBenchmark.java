@@ -0,0 +1,86 @@
+//
+//  Base64URLBenchmark.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import java.util.Random;
+
+import org.spongycastle.util.encoders.UrlBase64;
+
+/**
+ * Compares the Base64URL encoding of one token's worth of segments (a 12 bytes IV, a 32 bytes tag, a 200 bytes
+ * cipher text and a 256 bytes encrypted key) by {@link WPBase64URL}, into one shared buffer, with the original
+ * SpongyCastle {@link UrlBase64} encoding followed by the removal of the padding. The best round of each is
+ * printed in microseconds per token, after warm-up rounds.
+ * <p>
+ * Run it with <code>./gradlew :sdk:base64URLBenchmark</code>.
+ * </p>
+ */
+public class Base64URLBenchmark {
+
+    private static final int[] SEGMENT_LENGTHS = {12, 32, 200, 256};
+    private static final int TOKENS = 100000;
+    private static final int WARM_UP_ROUNDS = 5;
+    private static final int ROUNDS = 10;
+    private static final String PADDING = ".";
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        byte[][] segments = new byte[SEGMENT_LENGTHS.length][];
+        int encodedLength = 0;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new byte[SEGMENT_LENGTHS[i]];
+            random.nextBytes(segments[i]);
+            encodedLength += WPBase64URL.encodedLength(SEGMENT_LENGTHS[i]);
+        }
+        char[] buffer = new char[encodedLength];
+
+        long original = Long.MAX_VALUE;
+        long unpadded = Long.MAX_VALUE;
+        long checksum = 0;
+        for (int round = 0; round < WARM_UP_ROUNDS + ROUNDS; round++) {
+            long start = System.nanoTime();
+            for (int i = 0; i < TOKENS; i++) {
+                for (byte[] segment : segments) {
+                    checksum += originalEncode(segment).length();
+                }
+            }
+            long originalTime = System.nanoTime() - start;
+
+            start = System.nanoTime();
+            for (int i = 0; i < TOKENS; i++) {
+                int offset = 0;
+                for (byte[] segment : segments) {
+                    offset += WPBase64URL.encode(segment, 0, segment.length, buffer, offset);
+                }
+                checksum += offset;
+            }
+            long unpaddedTime = System.nanoTime() - start;
+
+            if (round >= WARM_UP_ROUNDS) {
+                original = Math.min(original, originalTime);
+                unpadded = Math.min(unpadded, unpaddedTime);
+            }
+        }
+        System.out.printf("UrlBase64 and padding strip:  %6.2f us%n", original / 1000.0 / TOKENS);
+        System.out.printf("WPBase64URL:                  %6.2f us%n", unpadded / 1000.0 / TOKENS);
+        System.out.println("(" + checksum + " characters)");
+    }
+
+    /**
+     * The encoding as it was before {@link WPBase64URL}
+     */
+    private static String originalEncode(byte[] bytes) {
+        String string = new String(UrlBase64.encode(bytes));
+        int index = string.indexOf(PADDING);
+        if (index > 0) {
+            string = string.substring(0, index);
+        }
+        return string;
+    }
+}
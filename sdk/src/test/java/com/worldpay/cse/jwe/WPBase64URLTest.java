@@ -0,0 +1,92 @@
+//
+//  WPBase64URLTest.java
+//  WorldpayCSE
+//
+//  Copyright (c) 2015 WorldPay. All rights reserved.
+//
+//  License information can be found in the LICENSE file
+
+package com.worldpay.cse.jwe;
+
+import junit.framework.Assert;
+
+import org.junit.Test;
+import org.spongycastle.util.encoders.UrlBase64;
+
+import java.util.Random;
+
+/**
+ * WPBase64URL Tester.
+ *
+ */
+public class WPBase64URLTest {
+
+    private static final String PADDING = ".";
+
+    @Test
+    public void testEncodeLengths() throws Exception {
+        //one length of each remainder modulo 3
+        Assert.assertEquals("", WPBase64URL.encode(new byte[0]));
+        Assert.assertEquals("Zg", WPBase64URL.encode("f".getBytes("US-ASCII")));
+        Assert.assertEquals("Zm8", WPBase64URL.encode("fo".getBytes("US-ASCII")));
+        Assert.assertEquals("Zm9v", WPBase64URL.encode("foo".getBytes("US-ASCII")));
+        Assert.assertEquals("Zm9vYg", WPBase64URL.encode("foob".getBytes("US-ASCII")));
+        Assert.assertEquals("Zm9vYmE", WPBase64URL.encode("fooba".getBytes("US-ASCII")));
+        Assert.assertEquals("Zm9vYmFy", WPBase64URL.encode("foobar".getBytes("US-ASCII")));
+    }
+
+    @Test
+    public void testEncodeAlphabet() throws Exception {
+        //"+/+/" and "//8" in the standard alphabet
+        Assert.assertEquals("-_-_", WPBase64URL.encode(new byte[]{(byte) 0xfb, (byte) 0xff, (byte) 0xbf}));
+        Assert.assertEquals("__8", WPBase64URL.encode(new byte[]{(byte) 0xff, (byte) 0xff}));
+        Assert.assertEquals("-w", WPBase64URL.encode(new byte[]{(byte) 0xfb}));
+
+        byte[] all = new byte[256];
+        for (int i = 0; i < all.length; i++) {
+            all[i] = (byte) i;
+        }
+        String encoded = WPBase64URL.encode(all);
+        Assert.assertEquals(originalEncode(all), encoded);
+        for (int i = 0; i < encoded.length(); i++) {
+            char c = encoded.charAt(i);
+            Assert.assertTrue(encoded, c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9'
+                    || c == '-' || c == '_');
+        }
+    }
+
+    @Test
+    public void testEncodeMatchesUrlBase64() throws Exception {
+        Random random = new Random(42);
+        for (int length = 0; length < 300; length++) {
+            byte[] src = new byte[length];
+            random.nextBytes(src);
+            String expected = originalEncode(src);
+
+            Assert.assertEquals(expected.length(), WPBase64URL.encodedLength(length));
+            Assert.assertEquals(expected, WPBase64URL.encode(src));
+
+            //the offset variants, writing into the middle of larger buffers
+            byte[] padded = new byte[length + 5];
+            System.arraycopy(src, 0, padded, 3, length);
+            char[] chars = new char[expected.length() + 4];
+            Assert.assertEquals(expected.length(), WPBase64URL.encode(padded, 3, length, chars, 2));
+            Assert.assertEquals(expected, new String(chars, 2, expected.length()));
+            byte[] bytes = new byte[expected.length() + 4];
+            Assert.assertEquals(expected.length(), WPBase64URL.encode(padded, 3, length, bytes, 2));
+            Assert.assertEquals(expected, new String(bytes, 2, expected.length(), "US-ASCII"));
+        }
+    }
+
+    /**
+     * The SpongyCastle encoding with the padding removed, as the SDK produced it before {@link WPBase64URL}
+     */
+    private static String originalEncode(byte[] bytes) {
+        String string = new String(UrlBase64.encode(bytes));
+        int index = string.indexOf(PADDING);
+        if (index >= 0) {
+            string = string.substring(0, index);
+        }
+        return string;
+    }
+}